@@ -0,0 +1,195 @@
+package Benchmarks;
+
+import App.Note;
+import App.PasswordManager;
+import Database.Database;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * inserting, updating, deleting and retrieving notes in a temporary SQLite database that already contains a vault of
+ * notes, with each storage profile. Inserted notes stay in the database, so the vault grows during the insert
+ * benchmarks.
+ * <p>
+ * The readDuringWrite benchmarks read notes on the read connection while another thread keeps write transactions open
+ * on the write connection, the way the NoteWriter writes a batch. With a rollback journal a read has to wait while a
+ * transaction commits; with a write-ahead log it reads the last committed notes instead.
+ * <p>
+ * The PerCallConnection benchmarks run the same queries the way Database did before it kept its connection open: every
+ * call opens a connection, prepares the statement and closes both again. These connections do not apply the pragmas of
+ * the storage profile, only its journal mode, which is stored in the database file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseBenchmark {
+
+    // the number of notes that are inserted in one write transaction of the readDuringWrite benchmarks
+    private static final int WRITE_BATCH = 100;
+
+    @Param({"ROLLBACK", "WAL", "WAL_FULL"})
+    public Database.StorageProfile storageProfile;
+    @Param({"10000"})
+    public int noteCount;
+    @Param({"200"})
+    public int noteLength;
+
+    private Path home;
+    private Database db;
+    private String url;
+    private JSONObject queries;
+    private final Random random = new Random(2);
+    private final List<Integer> noteIDs = new ArrayList<>();
+
+    /**
+     * a note that is inserted before every call of the delete benchmark, so that there is a note to delete
+     */
+    @State(Scope.Thread)
+    public static class InsertedNote {
+        private int noteID;
+
+        @Setup(Level.Invocation)
+        public void insert(DatabaseBenchmark benchmark) {
+            noteID = benchmark.db.insertNewNote(Vault.note(benchmark.random, -1, benchmark.noteLength));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        home = Vault.useTemporaryHome();
+        db = new Database(storageProfile);
+        Vault.fill(db, noteCount, noteLength);
+        url = "jdbc:sqlite:" + home.resolve(".passwordmanager").resolve("data.db");
+        try (Reader reader = new InputStreamReader(Database.class.getResourceAsStream("/Database/create_db.json"), StandardCharsets.UTF_8)) {
+            queries = (JSONObject) new JSONParser().parse(reader);
+        }
+        for (Note note : db.retrieveNotes()) {
+            noteIDs.add(note.getId());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.close();
+        Vault.delete(home);
+    }
+
+    @Benchmark
+    public int insert() {
+        return db.insertNewNote(Vault.note(random, -1, noteLength));
+    }
+
+    @Benchmark
+    public PasswordManager.UpsertStatus update() {
+        Note note = Vault.note(random, noteIDs.get(random.nextInt(noteIDs.size())), noteLength);
+        return db.updateNote(note);
+    }
+
+    @Benchmark
+    public PasswordManager.UpsertStatus delete(InsertedNote insertedNote) {
+        return db.deleteNote(insertedNote.noteID);
+    }
+
+    @Benchmark
+    public ArrayList<Note> retrieve() {
+        return db.retrieveNotes();
+    }
+
+    @Benchmark
+    public Note retrieveNote() {
+        return db.retrieveNote(noteIDs.get(random.nextInt(noteIDs.size())));
+    }
+
+    @Benchmark
+    @Group("readDuringWrite")
+    public Note readNote() {
+        return retrieveNote();
+    }
+
+    @Benchmark
+    @Group("readDuringWrite")
+    public void writeTransaction() throws SQLException {
+        synchronized (db) {
+            Connection connection = db.makeConnection();
+            connection.setAutoCommit(false);
+            try {
+                for (int i = 0; i < WRITE_BATCH; i++) {
+                    db.insertNewNote(Vault.note(random, -1, noteLength));
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    @Benchmark
+    public int insertPerCallConnection() throws SQLException {
+        Note note = Vault.note(random, -1, noteLength);
+        return executePerCall("new_note", note.getTitle(), note.getContent(), note.getCreateStamp(), note.getLastModStamp());
+    }
+
+    @Benchmark
+    public int updatePerCallConnection() throws SQLException {
+        Note note = Vault.note(random, noteIDs.get(random.nextInt(noteIDs.size())), noteLength);
+        return executePerCall("update_note", note.getTitle(), note.getContent(), note.getLastModStamp(), note.getId());
+    }
+
+    @Benchmark
+    public int deletePerCallConnection(InsertedNote insertedNote) throws SQLException {
+        return executePerCall("delete_note", insertedNote.noteID);
+    }
+
+    @Benchmark
+    public ArrayList<Note> retrievePerCallConnection() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             PreparedStatement statement = connection.prepareStatement((String) queries.get("retrieve_notes"));
+             ResultSet results = statement.executeQuery()) {
+            ArrayList<Note> notes = new ArrayList<>();
+            while (results.next()) {
+                notes.add(new Note(
+                        results.getInt("ID"),
+                        results.getString("title"),
+                        results.getString("content"),
+                        results.getLong("create_date"),
+                        results.getLong("last_mod_date")));
+            }
+            return notes;
+        }
+    }
+
+    /**
+     * runs a query in create_db.json on a new connection with a new prepared statement
+     * @param queryName the name of the query
+     * @param values the values of the query parameters
+     * @return the number of changed notes
+     * @throws SQLException database error
+     */
+    private int executePerCall(String queryName, Object... values) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             PreparedStatement statement = connection.prepareStatement((String) queries.get(queryName))) {
+            for (int i = 0; i < values.length; i++) {
+                statement.setObject(i + 1, values[i]);
+            }
+            return statement.executeUpdate();
+        }
+    }
+}
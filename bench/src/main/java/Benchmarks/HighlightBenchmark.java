@@ -0,0 +1,69 @@
+package Benchmarks;
+
+import App.Note;
+import App.NoteMatch;
+import App.PasswordManager;
+import App.SearchTerm;
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * highlighting the search term in a note title and content, and creating the note pane that shows a note, in headless
+ * mode. The note contains the search term in its title and content.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HighlightBenchmark {
+
+    @Param({"200", "2000"})
+    public int noteLength;
+    @Param({"pass"})
+    public String searchTerm;
+
+    private Note note;
+    private SearchTerm term;
+    private int[] titleMatches;
+    private int[] contentMatches;
+    private JTextArea contentArea;
+    private PasswordManager passwordManager;
+    private NoteMatch match;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Note randomNote = Vault.note(new Random(1), 1, noteLength);
+        // the search term is in the title, before the "..." of a cut-off title
+        note = new Note(1, "password " + randomNote.getTitle(), randomNote.getContent(), randomNote.getCreateStamp(),
+                randomNote.getLastModStamp());
+        term = new SearchTerm(searchTerm);
+        titleMatches = term.findMatches(note.getTitle());
+        contentMatches = term.findMatches(note.getContent());
+        contentArea = new JTextArea(note.getContent());
+        // the note pane does not use the database for a note with its full content
+        passwordManager = new PasswordManager(null);
+        match = new NoteMatch(note, PasswordManager.MatchType.BOTH, titleMatches, contentMatches);
+    }
+
+    @Benchmark
+    public String highlightTitle() {
+        return note.highlightTitle(titleMatches, term.length());
+    }
+
+    @Benchmark
+    public JTextArea highlightContent() {
+        contentArea.getHighlighter().removeAllHighlights();
+        note.highlightContent(contentArea, contentMatches, term.length());
+        return contentArea;
+    }
+
+    @Benchmark
+    public JPanel createNotePane() {
+        return passwordManager.createNotePane(match, term);
+    }
+}
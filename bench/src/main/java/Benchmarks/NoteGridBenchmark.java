@@ -0,0 +1,139 @@
+package Benchmarks;
+
+import App.Note;
+import App.NoteMatch;
+import App.PasswordManager;
+import App.SearchTerm;
+import GUI.NoteGrid;
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reconciling, laying out and painting the note grid in headless mode. The reconcile benchmarks replace the notes after
+ * an edit and scroll the grid, and then run the layouts that a validation of the scroll pane runs; the components are
+ * not displayable, so validate() does not lay them out. The paint benchmark paints the visible cards into an image.
+ * <p>
+ * The grid is only used on the event dispatch thread, like in the application: revalidate() on another thread
+ * invalidates the grid later on the event dispatch thread, which would clear the layout cache during a layout. The
+ * times include handing every call to that thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class NoteGridBenchmark {
+
+    // the size of the scroll pane, about the size of a maximized window
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 900;
+
+    @Param({"1000", "10000"})
+    public int noteCount;
+    @Param({"200"})
+    public int noteLength;
+    @Param({"", "password"})
+    public String searchTerm;
+
+    private NoteGrid grid;
+    private JScrollPane scrollPane;
+    private List<NoteMatch> matches;
+    // the same notes after the sixth note was edited, which moves it to the front
+    private List<NoteMatch> editedMatches;
+    private boolean edited;
+    private boolean scrolled;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SearchTerm term = new SearchTerm(searchTerm);
+        Random random = new Random(1);
+        matches = new ArrayList<>();
+        for (int i = 0; matches.size() < noteCount; i++) {
+            Note note = Vault.note(random, i, noteLength);
+            NoteMatch match = match(note, term);
+            if (match != null) matches.add(match);
+        }
+        Note note = matches.get(5).getNote();
+        editedMatches = new ArrayList<>(matches);
+        editedMatches.remove(5);
+        editedMatches.add(0, match(new Note(note.getId(), note.getTitle(), note.getContent(), note.getCreateStamp(),
+                note.getLastModStamp() + 1), term));
+
+        SwingUtilities.invokeAndWait(() -> {
+            // the note cards do not use the database for notes with their full content
+            grid = new NoteGrid(new PasswordManager(null));
+            scrollPane = grid.getScrollPane();
+            scrollPane.setSize(WIDTH, HEIGHT);
+            grid.setNotes(matches, searchTerm);
+            layout();
+
+            // paint directly into the image, there is no screen to double buffer for
+            RepaintManager.currentManager(scrollPane).setDoubleBufferingEnabled(false);
+            graphics = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB).createGraphics();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public NoteGrid reconcileEdit() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            edited = !edited;
+            grid.setNotes(edited ? editedMatches : matches, searchTerm);
+            layout();
+        });
+        return grid;
+    }
+
+    @Benchmark
+    public NoteGrid reconcileScroll() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            scrolled = !scrolled;
+            // the viewport notifies the grid, which shows the cards of the rows that scrolled into view
+            scrollPane.getViewport().setViewPosition(new Point(0, scrolled ? HEIGHT / 2 : 0));
+            layout();
+        });
+        return grid;
+    }
+
+    @Benchmark
+    public Graphics2D paint() throws Exception {
+        SwingUtilities.invokeAndWait(() -> scrollPane.paint(graphics));
+        return graphics;
+    }
+
+    /**
+     * lays out the scroll pane, its viewport and the grid
+     */
+    private void layout() {
+        scrollPane.doLayout();
+        scrollPane.getViewport().doLayout();
+        grid.doLayout();
+    }
+
+    /**
+     * @param note the note
+     * @param term the search term
+     * @return the note with the matches of the search term, or null if the note does not contain the term
+     */
+    private static NoteMatch match(Note note, SearchTerm term) {
+        if (term.getTerm().isEmpty()) return new NoteMatch(note, PasswordManager.MatchType.NONE);
+        int[] titleMatches = term.findMatches(note.getTitle());
+        int[] contentMatches = term.findMatches(note.getContent());
+        if (titleMatches.length == 0 && contentMatches.length == 0) return null;
+        return new NoteMatch(note, PasswordManager.getMatchType(titleMatches.length > 0, contentMatches.length > 0),
+                titleMatches, contentMatches);
+    }
+}
@@ -0,0 +1,60 @@
+package Benchmarks;
+
+import App.NoteMatch;
+import App.PasswordManager;
+import Database.Database;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordManager.getNotes() on a vault that was loaded from a temporary database, as at startup. The search cache is
+ * cleared before every call, so that every call searches the notes; the empty search term returns all notes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SearchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int noteCount;
+    @Param({"200"})
+    public int noteLength;
+    // no search term, a term too short for the trigram index, a common term, and a term that no note contains
+    @Param({"", "pa", "password", "no such term"})
+    public String searchTerm;
+
+    private Path home;
+    private PasswordManager passwordManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        home = Vault.useTemporaryHome();
+        Database db = new Database();
+        Vault.fill(db, noteCount, noteLength);
+        db.close();
+
+        passwordManager = new PasswordManager(null);
+        passwordManager.open(() -> {});
+    }
+
+    @Setup(Level.Invocation)
+    public void clearSearchCache() {
+        passwordManager.clearSearchCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Vault.delete(home);
+    }
+
+    @Benchmark
+    public List<NoteMatch> getNotes() {
+        return passwordManager.getNotes(searchTerm);
+    }
+}
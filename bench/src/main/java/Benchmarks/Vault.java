@@ -0,0 +1,120 @@
+package Benchmarks;
+
+import App.Note;
+import Database.Database;
+import Database.NoteTransfer;
+import org.json.simple.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * synthetic vaults for the benchmarks. The notes consist of random words, some of which are searched by the
+ * benchmarks, so that searches find a part of the notes. The same seed gives the same notes.
+ */
+final class Vault {
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "password", "login", "secret", "user",
+            "bank", "mail", "server", "key", "token", "account", "recovery", "code"};
+
+    private Vault() {}
+
+    /**
+     * @param random the random generator
+     * @param noteID the note ID, or -1 for a note that is not in the database yet
+     * @param noteLength the number of characters of the content
+     * @return a note with a title of 2 to 6 words, some of which are cut off in the note pane, and a content of random
+     * words
+     */
+    static Note note(Random random, int noteID, int noteLength) {
+        String title = words(random, 2 + random.nextInt(5), Integer.MAX_VALUE);
+        String content = words(random, Integer.MAX_VALUE, noteLength);
+        long date = 1_600_000_000_000L + random.nextInt(1_000_000_000);
+        return new Note(noteID, title, content, date, date);
+    }
+
+    /**
+     * @param random the random generator
+     * @param wordCount the maximum number of words
+     * @param length the maximum number of characters
+     * @return random words separated by spaces
+     */
+    private static String words(Random random, int wordCount, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < wordCount && text.length() < length; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        text.setLength(Math.min(text.length(), length));
+        return text.toString();
+    }
+
+    /**
+     * points the database of this JVM to a new temporary directory: Database keeps its file in user.home, so this has
+     * to be called before a Database or PasswordManager is created
+     * @return the temporary directory
+     * @throws IOException the directory could not be created
+     */
+    static Path useTemporaryHome() throws IOException {
+        Path home = Files.createTempDirectory("passwordmanager-bench");
+        System.setProperty("user.home", home.toString());
+        return home;
+    }
+
+    /**
+     * creates the database and inserts random notes into it, in batches (see NoteTransfer.importNotes())
+     * @param db the database to fill
+     * @param noteCount the number of notes
+     * @param noteLength the number of characters of the note contents
+     * @throws IOException the notes could not be written to a temporary file
+     * @throws SQLException database error
+     */
+    @SuppressWarnings("unchecked")
+    static void fill(Database db, int noteCount, int noteLength) throws IOException, SQLException {
+        db.createDatabase();
+        Path file = Files.createTempFile("passwordmanager-bench", ".jsonl");
+        try {
+            Random random = new Random(1);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < noteCount; i++) {
+                    Note note = note(random, -1, noteLength);
+                    JSONObject json = new JSONObject();
+                    json.put("title", note.getTitle());
+                    json.put("content", note.getContent());
+                    json.put("create_date", note.getCreateStamp());
+                    json.put("last_mod_date", note.getLastModStamp());
+                    writer.write(json.toJSONString());
+                    writer.newLine();
+                }
+            }
+            new NoteTransfer(db).importNotes(file, (notes, notesPerSecond) -> {});
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * deletes a temporary directory and everything in it
+     * @param dir the directory
+     * @throws IOException the directory could not be read
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package Benchmarks;
+
+import GUI.WrapLayout;
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * laying out a panel with a WrapLayout in a scroll pane, in headless mode, after the panel was invalidated and after
+ * the scroll pane was resized. The components have a fixed preferred size, like the note cards, and 1 in 50 components
+ * is hidden. The benchmarks run the layouts that a validation of the scroll pane runs; the components are not
+ * displayable, so validate() does not lay them out. Like in the application, the panel is only used on the event
+ * dispatch thread; the times include handing every call to that thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WrapLayoutBenchmark {
+
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 900;
+
+    @Param({"1000", "10000", "50000"})
+    public int componentCount;
+
+    private JPanel panel;
+    private JScrollPane scrollPane;
+    private boolean resized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            panel = new JPanel(new WrapLayout(FlowLayout.CENTER, 10, 10));
+            for (int i = 0; i < componentCount; i++) {
+                JComponent component = new JPanel();
+                component.setPreferredSize(new Dimension(200, 120));
+                component.setVisible(i % 50 != 0);
+                panel.add(component);
+            }
+            scrollPane = new JScrollPane(panel);
+            scrollPane.setSize(WIDTH, HEIGHT);
+            layout();
+        });
+    }
+
+    @Benchmark
+    public JPanel relayout() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            // invalidating the panel clears the cached sizes and rows of the layout
+            panel.invalidate();
+            layout();
+        });
+        return panel;
+    }
+
+    @Benchmark
+    public JPanel resize() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            // a width change fits a different number of components into a row
+            resized = !resized;
+            scrollPane.setSize(resized ? WIDTH - 300 : WIDTH, HEIGHT);
+            layout();
+        });
+        return panel;
+    }
+
+    /**
+     * lays out the scroll pane, its viewport and the panel
+     */
+    private void layout() {
+        scrollPane.doLayout();
+        scrollPane.getViewport().doLayout();
+        panel.doLayout();
+    }
+}
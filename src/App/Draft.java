@@ -0,0 +1,81 @@
+package App;
+
+/**
+ * the autosaved, unsaved title and content of a note that is being created or edited in an UpsertNote window. Drafts
+ * are kept in the draft table until the note is saved or discarded, so that they can be recovered when the app was
+ * closed without saving.
+ * <p>
+ * The draft ID and the saved title and content are only changed by the NoteWriter thread when the draft is written;
+ * they are used to write only the changed part of the content.
+ */
+public class Draft {
+
+    private final int noteID;
+    private int id;
+    private String title;
+    private String content;
+    private long lastModDate;
+
+    /**
+     * Constructor for a draft that is not saved yet
+     * @param noteID the ID of the edited note, or -1 for a new note
+     */
+    public Draft(int noteID) {
+        this(-1, noteID, null, null, 0);
+    }
+
+    /**
+     * Constructor
+     * @param id the ID of the draft in the database, or -1 if it is not saved yet
+     * @param noteID the ID of the edited note, or -1 for a new note
+     * @param title the saved draft title
+     * @param content the saved draft content, or null if it is not known what is saved
+     * @param lastModDate the last autosave date in milliseconds since January 1, 1970, 00:00:00 GMT
+     */
+    public Draft(int id, int noteID, String title, String content, long lastModDate) {
+        this.id = id;
+        this.noteID = noteID;
+        this.title = title;
+        this.content = content;
+        this.lastModDate = lastModDate;
+    }
+
+    /**
+     * @return the ID of the draft in the database, or -1 if it is not saved yet
+     */
+    public int getId() { return id; }
+
+    /**
+     * @return the ID of the edited note, or -1 for a new note
+     */
+    public int getNoteID() { return noteID; }
+
+    /**
+     * @return the saved draft title
+     */
+    public String getTitle() { return title; }
+
+    /**
+     * @return the saved draft content, or null if it is not known what is saved
+     */
+    public String getContent() { return content; }
+
+    /**
+     * @return the last autosave date in milliseconds since January 1, 1970, 00:00:00 GMT
+     */
+    public long getLastModStamp() { return lastModDate; }
+
+    /**
+     * sets what is saved in the database after the draft was written
+     * @param id the ID of the draft in the database, or -1 if it is not saved
+     * @param title the saved draft title
+     * @param content the saved draft content, or null if it is not known what is saved
+     * @param lastModDate the last autosave date in milliseconds since January 1, 1970, 00:00:00 GMT
+     */
+    public void setSaved(int id, String title, String content, long lastModDate) {
+        this.id = id;
+        this.title = title;
+        this.content = content;
+        this.lastModDate = lastModDate;
+    }
+}
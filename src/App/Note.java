@@ -5,11 +5,13 @@ import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Highlighter;
 import java.awt.*;
-import java.text.SimpleDateFormat;
-import java.util.regex.Pattern;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 /**
- * stores all information of a note
+ * stores all information of a note. The date formatter and highlight painter are shared by all notes; both can be
+ * used by multiple notes at the same time.
  */
 public class Note {
 
@@ -18,8 +20,11 @@ public class Note {
     private final String content;
     private final long createDate;
     private final long lastModDate;
-    private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(Color.pink);
-    private final SimpleDateFormat simpleFormat = new SimpleDateFormat("dd MMM yyyy HH:mm");
+    private final boolean contentPreview;
+    private static final Highlighter.HighlightPainter PAINTER = new DefaultHighlighter.DefaultHighlightPainter(Color.pink);
+    private static final String TITLE_HIGHLIGHT = "#F7A9A9";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm")
+            .withZone(ZoneId.systemDefault());
 
     /**
      * Constructor
@@ -30,11 +35,25 @@ public class Note {
      * @param lastModDate the note last modification date in milliseconds since January 1, 1970, 00:00:00 GMT
      */
     public Note(int id, String title, String content, long createDate, long lastModDate) {
+        this(id, title, content, createDate, lastModDate, false);
+    }
+
+    /**
+     * Constructor
+     * @param id the ID of the note in the database
+     * @param title the note title
+     * @param content the note content, or only the start of the note content if contentPreview is true
+     * @param createDate the note creation date in milliseconds since January 1, 1970, 00:00:00 GMT
+     * @param lastModDate the note last modification date in milliseconds since January 1, 1970, 00:00:00 GMT
+     * @param contentPreview whether content is only the start of the note content
+     */
+    public Note(int id, String title, String content, long createDate, long lastModDate, boolean contentPreview) {
         this.id = id;
         this.title = title;
         this.content = content;
         this.createDate = createDate;
         this.lastModDate = lastModDate;
+        this.contentPreview = contentPreview;
     }
 
     /**
@@ -59,12 +78,20 @@ public class Note {
     }
 
     /**
-     * @return the note content
+     * @return the note content, or only the start of the note content if isContentPreview() is true
      */
     public String getContent() {
         return content;
     }
 
+    /**
+     * @return true if getContent() only returns the start of the note content, the full content then has to be fetched
+     * from the database
+     */
+    public boolean isContentPreview() {
+        return contentPreview;
+    }
+
     /**
      * @return the note creation date in milliseconds since January 1, 1970, 00:00:00 GMT
      */
@@ -83,58 +110,70 @@ public class Note {
      * @return the note create date in "dd MMM yyyy HH:mm" format
      */
     public String getCreateDate() {
-        return simpleFormat.format(createDate);
+        return DATE_FORMAT.format(Instant.ofEpochMilli(createDate));
     }
 
     /**
      * @return the note last modification date in "dd MMM yyyy HH:mm" format
      */
     public String getLastModDate() {
-        return simpleFormat.format(lastModDate);
+        return DATE_FORMAT.format(Instant.ofEpochMilli(lastModDate));
     }
 
     /**
-     * highlights the searchTerm in the note content using a Highlighter
+     * highlights the searchTerm matches in the note content using a Highlighter
      * @param contentArea the note content JTextArea
-     * @param searchTerm the searchTerm to highlight
+     * @param matches the start indices of the matches in the text of the contentArea, see SearchTerm.findMatches()
+     * @param length the length of every match
      */
-    public void highlightContent(JTextArea contentArea, String searchTerm) {
-        searchTerm = searchTerm.toLowerCase();
+    public void highlightContent(JTextArea contentArea, int[] matches, int length) {
         Highlighter highlighter = contentArea.getHighlighter();
-        String noteContent = content.toLowerCase();
-
-        // loop over all searchTerm matches in the note content in order to highlight using a Highlighter
-        int index = noteContent.indexOf(searchTerm);
-        while (index >= 0) {
-            int endIndex = index + searchTerm.length();
+        int textLength = contentArea.getDocument().getLength();
+        for (int index : matches) {
+            // the contentArea may only show the start of the content
+            if (index + length > textLength) break;
             try {
-                highlighter.addHighlight(index, endIndex, painter);
+                highlighter.addHighlight(index, index + length, PAINTER);
             } catch (BadLocationException e) {
                 e.printStackTrace();
             }
-            // search again but then 1 character further in order to get all matches in the content string
-            index = noteContent.indexOf(searchTerm, index + 1);
         }
     }
 
     /**
-     * highlights the searchTerm in the note title using HTML since you can't use a Highlighter in JLabels
-     * @param searchTerm the searchTerm to highlight
+     * highlights the searchTerm matches in the note title using HTML since you can't use a Highlighter in JLabels
+     * @param matches the start indices of the matches in the title, see SearchTerm.findMatches()
+     * @param length the length of every match
      * @return the note title but with HTML for the highlighting
      */
-    public String highlightTitle(String searchTerm) {
+    public String highlightTitle(int[] matches, int length) {
         String title = this.title;
+        int visibleLength = title.length();
         if (title.length() > 30) {
             // cut-off the title with "..." and only highlight what is visible on screen
             title = this.reduceTitleLength();
+            visibleLength = 28;
         }
         // text in JLabels cannot be highlighted using a highlighter. Therefore, I use HTML to highlight the searchTerm
-        // matches in the title. I do this by replacing all occurrences of the searchTerm with <span bgcolor=''>searchTerm</span>.
-        // First, escape all regex chars in the searchTerm to prevent unwanted behaviour (there was an error when typing '(' in
-        // the search field because it was seen as a matching group).
-        Pattern SPECIAL_REGEX_CHARS = Pattern.compile("[{}()\\[\\].+*?^$\\\\|]");
-        searchTerm = SPECIAL_REGEX_CHARS.matcher(searchTerm).replaceAll("\\\\$0");
-        return "<html>" + title.replaceAll("(?i)("+searchTerm+")", "<span bgcolor='#F7A9A9'>$1</span>") + "</html>";
+        // matches in the title, by wrapping every match in <span bgcolor=''>match</span>.
+        StringBuilder html = new StringBuilder("<html>");
+        int end = 0;
+        for (int index : matches) {
+            if (index + length > visibleLength) break;
+            html.append(title, end, index)
+                    .append("<span bgcolor='").append(TITLE_HIGHLIGHT).append("'>")
+                    .append(title, index, index + length)
+                    .append("</span>");
+            end = index + length;
+        }
+        return html.append(title, end, title.length()).append("</html>").toString();
+    }
+
+    /**
+     * @return the background color of the searchTerm matches in the note title
+     */
+    public static Color getTitleHighlightColor() {
+        return Color.decode(TITLE_HIGHLIGHT);
     }
 
     @Override
@@ -145,7 +184,7 @@ public class Note {
                 ", content='" + content + '\'' +
                 ", createDate='" + createDate + '\'' +
                 ", lastModDate='" + lastModDate + '\'' +
-                ", painter=" + painter +
+                ", contentPreview=" + contentPreview +
                 '}';
     }
 }
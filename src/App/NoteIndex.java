@@ -0,0 +1,193 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * immutable, versioned snapshot of all notes in memory, keyed by note ID. The notes are kept in a compact NoteStore,
+ * sorted on their last modification date (last edited notes first), so inserts, updates and deletions can be applied
+ * without re-sorting all notes. A TrigramIndex over the note titles and contents can be kept alongside to find search
+ * candidates.
+ * <p>
+ * A change creates the next version of the snapshot; the current version stays the same, so it can be searched by other
+ * threads without locking. The next version shares most of its data with the current one (see NoteStore), so only one
+ * next version should be created from every version.
+ */
+public class NoteIndex implements Iterable<Note> {
+
+    // the last version of any snapshot, so that versions are never reused, not even after reloading all notes
+    private static final AtomicLong LAST_VERSION = new AtomicLong();
+    private final NoteStore store;
+    private TrigramIndex trigramIndex;
+    // the number of updated or deleted notes whose old trigrams are still in the trigram index
+    private int staleNotes;
+    private final long version;
+
+    /**
+     * Constructor
+     * @param notes the notes to index
+     * @param searchIndex whether a TrigramIndex should be kept to find search candidates
+     */
+    public NoteIndex(Collection<Note> notes, boolean searchIndex) {
+        store = new NoteStore();
+        trigramIndex = searchIndex ? new TrigramIndex() : null;
+        staleNotes = 0;
+        version = LAST_VERSION.incrementAndGet();
+        for (Note note : notes) {
+            put(note);
+        }
+    }
+
+    /**
+     * creates the next version of a snapshot, which can be changed until it is returned
+     * @param previous the previous version
+     */
+    private NoteIndex(NoteIndex previous) {
+        store = previous.store.copy();
+        trigramIndex = previous.trigramIndex;
+        staleNotes = previous.staleNotes;
+        version = LAST_VERSION.incrementAndGet();
+    }
+
+    /**
+     * @param note instance of Note
+     * @return the next version, in which the note is added or replaces the note with the same ID
+     */
+    public NoteIndex withNote(Note note) {
+        return withNotes(Collections.singletonList(note));
+    }
+
+    /**
+     * @param notes the notes to add
+     * @return the next version, in which the notes are added or replace the notes with the same ID
+     */
+    public NoteIndex withNotes(Collection<Note> notes) {
+        NoteIndex next = new NoteIndex(this);
+        for (Note note : notes) {
+            next.put(note);
+        }
+        next.removeStaleTrigrams();
+        return next;
+    }
+
+    /**
+     * @param noteID the note ID
+     * @return the next version, in which the note with this ID is removed
+     */
+    public NoteIndex withoutNote(int noteID) {
+        NoteIndex next = new NoteIndex(this);
+        if (next.store.remove(noteID) != null) next.staleNotes++;
+        next.removeStaleTrigrams();
+        return next;
+    }
+
+    /**
+     * @return the version of this snapshot, every new snapshot gets a higher version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * adds a note to this version, or replaces the note with the same ID
+     * @param note instance of Note
+     */
+    private void put(Note note) {
+        Note oldNote = store.put(note);
+        if (oldNote != null) staleNotes++;
+        // the trigram index is shared with the previous versions, but adding trigrams only adds candidates to them
+        if (trigramIndex != null) trigramIndex.add(note);
+    }
+
+    /**
+     * replaces the trigram index by a new one if it contains more old trigrams than notes
+     */
+    private void removeStaleTrigrams() {
+        if (trigramIndex == null || staleNotes <= store.size()) return;
+        trigramIndex = new TrigramIndex();
+        for (Note note : store) {
+            trigramIndex.add(note);
+        }
+        staleNotes = 0;
+    }
+
+    /**
+     * @param noteID the note ID
+     * @return the note with this ID, or null if there is no note with this ID
+     */
+    public Note get(int noteID) {
+        return store.get(noteID);
+    }
+
+    /**
+     * @return the number of notes in the index
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * finds the notes that contain the searchTerm in their title or content. Only the candidates of the trigram index
+     * are searched if it can be used, otherwise all notes are scanned in the NoteStore.
+     * @param term the search term
+     * @return the matching notes (last edited notes first), or null if the thread was interrupted before the search
+     * was done
+     */
+    public ArrayList<NoteMatch> search(SearchTerm term) {
+        Set<Integer> candidateIDs = trigramIndex != null ? trigramIndex.getCandidates(term.getTerm()) : null;
+        if (candidateIDs == null) {
+            // there is no trigram index or the searchTerm is too short for it; every note is a candidate
+            return store.search(term);
+        }
+        // the shared trigram index can contain notes of other versions, those have no slot in this version
+        return store.search(term, store.getSlots(candidateIDs));
+    }
+
+    /**
+     * finds the candidate notes that contain the searchTerm in their title or content, e.g. the matches of a shorter
+     * search term. Both fields are scanned once; the matches decide the MatchType and are reused for the highlighting.
+     * @param term the search term
+     * @param candidates matches of a search in this version, last edited notes first
+     * @return the matching notes in the order of the candidates, or null if the thread was interrupted before the
+     * search was done
+     */
+    public ArrayList<NoteMatch> search(SearchTerm term, List<NoteMatch> candidates) {
+        int[] slots = new int[candidates.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = candidates.get(i).getSlot(store);
+            // a match of another version, search all notes instead
+            if (slots[i] < 0) return search(term);
+        }
+        return store.search(term, slots);
+    }
+
+    /**
+     * @param matches matches of a search in an earlier version, e.g. a cached search result
+     * @return the same matches, referring to the notes in this version, or null if one of the notes was changed or
+     * deleted in the meantime
+     */
+    ArrayList<NoteMatch> rebind(List<NoteMatch> matches) {
+        return store.rebind(matches);
+    }
+
+    /**
+     * @return all notes, last edited notes first, as matches without search term. The notes are only created when
+     * they are asked for.
+     */
+    public List<NoteMatch> getAll() {
+        return store.getAll();
+    }
+
+    /**
+     * @return iterator over all notes, last edited notes first. The notes are created while iterating.
+     */
+    @Override
+    public Iterator<Note> iterator() {
+        return store.iterator();
+    }
+}
@@ -0,0 +1,134 @@
+package App;
+
+/**
+ * a note that matched a search, together with where the searchTerm matched. The match ranges are only known when the
+ * search was done in memory; otherwise they are null and have to be found when the note is highlighted.
+ * <p>
+ * A match of a note in memory only refers to the slot of the note in its NoteStore, so that a list of all notes does
+ * not hold a copy of every title and content. The Note is created when it is asked for, e.g. for a visible note card.
+ */
+public class NoteMatch {
+
+    private final Note note;
+    // the store and slot of the note if note is null
+    private final NoteStore store;
+    private final int slot;
+    private final PasswordManager.MatchType matchType;
+    private final int[] titleMatches;
+    private final int[] contentMatches;
+
+    /**
+     * Constructor
+     * @param note instance of Note that matched the search
+     * @param matchType whether the searchTerm matched in the note title or content, or both or none
+     */
+    public NoteMatch(Note note, PasswordManager.MatchType matchType) {
+        this(note, matchType, null, null);
+    }
+
+    /**
+     * Constructor
+     * @param note instance of Note that matched the search
+     * @param matchType whether the searchTerm matched in the note title or content, or both or none
+     * @param titleMatches the start indices of the searchTerm matches in the note title
+     * @param contentMatches the start indices of the searchTerm matches in the note content
+     */
+    public NoteMatch(Note note, PasswordManager.MatchType matchType, int[] titleMatches, int[] contentMatches) {
+        this(note, null, -1, matchType, titleMatches, contentMatches);
+    }
+
+    /**
+     * Constructor
+     * @param store the NoteStore with the note that matched the search
+     * @param slot the slot of the note in the store
+     * @param matchType whether the searchTerm matched in the note title or content, or both or none
+     * @param titleMatches the start indices of the searchTerm matches in the note title
+     * @param contentMatches the start indices of the searchTerm matches in the note content
+     */
+    NoteMatch(NoteStore store, int slot, PasswordManager.MatchType matchType, int[] titleMatches, int[] contentMatches) {
+        this(null, store, slot, matchType, titleMatches, contentMatches);
+    }
+
+    private NoteMatch(Note note, NoteStore store, int slot, PasswordManager.MatchType matchType, int[] titleMatches,
+                      int[] contentMatches) {
+        this.note = note;
+        this.store = store;
+        this.slot = slot;
+        this.matchType = matchType;
+        this.titleMatches = titleMatches;
+        this.contentMatches = contentMatches;
+    }
+
+    /**
+     * @return the matching note; for a note in memory, a new Note is created on every call (see withNote())
+     */
+    public Note getNote() {
+        return note != null ? note : store.getNote(slot);
+    }
+
+    /**
+     * @return this match with its Note created, so that getNote() does not create it again
+     */
+    public NoteMatch withNote() {
+        return note != null ? this : new NoteMatch(getNote(), matchType, titleMatches, contentMatches);
+    }
+
+    /**
+     * @param store a NoteStore that contains the same note
+     * @param slot the slot of the note in the store
+     * @return this match, referring to the slot of the note in the store
+     */
+    NoteMatch inSlot(NoteStore store, int slot) {
+        return new NoteMatch(null, store, slot, matchType, titleMatches, contentMatches);
+    }
+
+    /**
+     * @return the ID of the matching note
+     */
+    public int getNoteID() {
+        return note != null ? note.getId() : store.getId(slot);
+    }
+
+    /**
+     * @return the last modification date of the matching note in milliseconds since January 1, 1970, 00:00:00 GMT
+     */
+    public long getLastModStamp() {
+        return note != null ? note.getLastModStamp() : store.getLastModStamp(slot);
+    }
+
+    /**
+     * @return whether the matching note only has the start of its content
+     */
+    public boolean isContentPreview() {
+        return note != null ? note.isContentPreview() : store.isContentPreview(slot);
+    }
+
+    /**
+     * @param store a NoteStore
+     * @return the slot of the note in the store, or -1 if the match does not refer to a slot of this store
+     */
+    int getSlot(NoteStore store) {
+        return this.store == store ? slot : -1;
+    }
+
+    /**
+     * @return whether the searchTerm matched in the note title or content, or both or none
+     */
+    public PasswordManager.MatchType getMatchType() {
+        return matchType;
+    }
+
+    /**
+     * @return the start indices of the searchTerm matches in the note title, or null if they are not known
+     */
+    public int[] getTitleMatches() {
+        return titleMatches;
+    }
+
+    /**
+     * @return the start indices of the searchTerm matches in the note content, or null if they are not known
+     */
+    public int[] getContentMatches() {
+        return contentMatches;
+    }
+}
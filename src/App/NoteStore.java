@@ -0,0 +1,651 @@
+package App;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * compact, column-oriented storage of notes. Every note is stored in a slot: its ID and dates are kept in primitive
+ * arrays, and its title and content are packed after each other in chunks of characters, so that the text of all notes
+ * does not have to fit in one array. Note objects are only created when a note is requested; searches scan the chunks
+ * directly and return matches that refer to their slot (see NoteMatch).
+ * <p>
+ * Slots are never moved; an updated note gets a new slot and its old slot is marked as deleted. The order of the notes
+ * (last edited notes first) is kept in a separate array of slot numbers with free space at both ends, since new and
+ * edited notes are added at the front and pages of older notes at the back. The storage is compacted when more than
+ * half of it belongs to deleted notes.
+ * <p>
+ * A copy of the store shares its columns and chunks with the original: slots are only appended to them, and the copy
+ * appends after the last slot of the original, which the original never reads. So the original stays the same while
+ * the copy is changed, and can still be read by other threads.
+ */
+class NoteStore implements Iterable<Note> {
+
+    // from this number of notes, searches are done in parallel
+    static final int PARALLEL_THRESHOLD = 20000;
+    private static final int EMPTY = Integer.MIN_VALUE;
+    // a chunk grows up to CHUNK_SIZE characters, only the text of a longer note gets a larger chunk of its own
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE - 8;
+
+    // note columns, indexed by slot
+    private int[] ids = new int[16];
+    private long[] createDates = new long[16];
+    private long[] lastModDates = new long[16];
+    private int[] textChunks = new int[16];
+    private int[] textOffsets = new int[16];
+    private int[] titleLengths = new int[16];
+    private int[] contentLengths = new int[16];
+    private BitSet contentPreviews = new BitSet();
+    private BitSet deleted = new BitSet();
+    private int slotCount = 0;
+    private int deletedCount = 0;
+
+    // titles and contents of all slots; the text of a slot is never split over two chunks
+    private char[][] chunks = new char[4][];
+    private int chunkCount = 0;
+    // the number of characters used in the last chunk
+    private int chunkLength = 0;
+    // true when another copy appends to the last chunk, the next text then goes to a new chunk
+    private boolean lastChunkShared = false;
+    private long textLength = 0;
+    private long deletedTextLength = 0;
+
+    // slot numbers from the last edited note to the least recently edited note, in order[head] to order[tail - 1]
+    private int[] order = new int[16];
+    private int head = 8;
+    private int tail = 8;
+
+    // open addressing hash table from note ID to slot
+    private int[] slotKeys = emptyKeys(16);
+    private int[] slotValues = new int[16];
+    // true when a copy shares the columns and character buffer, this store may then no longer be changed
+    private boolean copied = false;
+
+    /**
+     * creates a copy that can be changed without changing this store. Only the order array, the hash table, the bit
+     * sets and the list of chunks are copied; the columns and chunks are shared with the first copy.
+     * @return the copy
+     */
+    NoteStore copy() {
+        // a second copy would append to the same slots and chunk as the first copy, so it gets its own columns, and
+        // appends its text to a new chunk
+        boolean share = !copied;
+        copied = true;
+
+        NoteStore copy = new NoteStore();
+        copy.ids = share ? ids : ids.clone();
+        copy.createDates = share ? createDates : createDates.clone();
+        copy.lastModDates = share ? lastModDates : lastModDates.clone();
+        copy.textChunks = share ? textChunks : textChunks.clone();
+        copy.textOffsets = share ? textOffsets : textOffsets.clone();
+        copy.titleLengths = share ? titleLengths : titleLengths.clone();
+        copy.contentLengths = share ? contentLengths : contentLengths.clone();
+        copy.chunks = chunks.clone();
+        copy.chunkCount = chunkCount;
+        copy.chunkLength = chunkLength;
+        copy.lastChunkShared = lastChunkShared || !share;
+        copy.contentPreviews = (BitSet) contentPreviews.clone();
+        copy.deleted = (BitSet) deleted.clone();
+        copy.slotCount = slotCount;
+        copy.deletedCount = deletedCount;
+        copy.textLength = textLength;
+        copy.deletedTextLength = deletedTextLength;
+        copy.order = order.clone();
+        copy.head = head;
+        copy.tail = tail;
+        copy.slotKeys = slotKeys.clone();
+        copy.slotValues = slotValues.clone();
+        return copy;
+    }
+
+    /**
+     * adds a note, or replaces the note with the same ID
+     * @param note instance of Note
+     * @return the replaced note, or null if there was no note with this ID
+     */
+    public Note put(Note note) {
+        checkNotCopied();
+        Note oldNote = remove(note.getId());
+
+        int slot = slotCount++;
+        ensureSlotCapacity(slotCount);
+        String title = note.getTitle();
+        String content = note.getContent();
+        int offset = reserveText(note.getId(), (long) title.length() + content.length());
+        char[] chunk = chunks[chunkCount - 1];
+
+        ids[slot] = note.getId();
+        createDates[slot] = note.getCreateStamp();
+        lastModDates[slot] = note.getLastModStamp();
+        textChunks[slot] = chunkCount - 1;
+        textOffsets[slot] = offset;
+        titleLengths[slot] = title.length();
+        contentLengths[slot] = content.length();
+        contentPreviews.set(slot, note.isContentPreview());
+        title.getChars(0, title.length(), chunk, offset);
+        content.getChars(0, content.length(), chunk, offset + title.length());
+
+        putSlot(note.getId(), slot);
+        insertInOrder(slot);
+        return oldNote;
+    }
+
+    /**
+     * removes a note
+     * @param noteID the note ID
+     * @return the removed note, or null if there was no note with this ID
+     */
+    public Note remove(int noteID) {
+        checkNotCopied();
+        int slot = removeSlot(noteID);
+        if (slot < 0) {
+            return null;
+        }
+
+        Note note = getNote(slot);
+        deleted.set(slot);
+        deletedCount++;
+        deletedTextLength += titleLengths[slot] + contentLengths[slot];
+        if (deletedCount > slotCount / 2 || deletedTextLength > textLength / 2) {
+            compact();
+        }
+        return note;
+    }
+
+    /**
+     * @param noteID the note ID
+     * @return the note with this ID, or null if there is no note with this ID
+     */
+    public Note get(int noteID) {
+        int slot = getSlot(noteID);
+        return slot >= 0 ? getNote(slot) : null;
+    }
+
+    /**
+     * @throws IllegalStateException if a copy shares the columns of this store
+     */
+    private void checkNotCopied() {
+        if (copied) {
+            throw new IllegalStateException("A copied NoteStore cannot be changed");
+        }
+    }
+
+    /**
+     * @return the number of notes
+     */
+    public int size() {
+        return slotCount - deletedCount;
+    }
+
+    /**
+     * searches all notes, last edited notes first. From PARALLEL_THRESHOLD notes, the notes are scanned in parallel
+     * on the common ForkJoinPool; the result keeps the order of the notes.
+     * @param term the search term
+     * @return the matching notes, or null if the thread was interrupted before the search was done
+     */
+    public ArrayList<NoteMatch> search(SearchTerm term) {
+        return search(term, order, head, tail);
+    }
+
+    /**
+     * searches the notes in some slots, see search(SearchTerm)
+     * @param term the search term
+     * @param slots the slots to search, the matches keep their order
+     * @return the matching notes, or null if the thread was interrupted before the search was done
+     */
+    public ArrayList<NoteMatch> search(SearchTerm term, int[] slots) {
+        return search(term, slots, 0, slots.length);
+    }
+
+    /**
+     * searches the notes in a range of slots, see search(SearchTerm)
+     * @param term the search term
+     * @param slots the slots to search, the matches keep their order
+     * @param from the first index in slots
+     * @param to the last index (exclusive) in slots
+     * @return the matching notes, or null if the thread was interrupted before the search was done
+     */
+    private ArrayList<NoteMatch> search(SearchTerm term, int[] slots, int from, int to) {
+        Thread searchThread = Thread.currentThread();
+        if (to - from >= PARALLEL_THRESHOLD) {
+            // the ForkJoinPool threads check the interrupted state of the search thread, so they can stop early
+            List<NoteMatch> matches = IntStream.range(from, to)
+                    .parallel()
+                    .mapToObj(i -> searchThread.isInterrupted() ? null : matchSlot(term, slots[i]))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            return searchThread.isInterrupted() ? null : new ArrayList<>(matches);
+        }
+
+        ArrayList<NoteMatch> matches = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (searchThread.isInterrupted()) {
+                return null;
+            }
+            NoteMatch match = matchSlot(term, slots[i]);
+            if (match != null) matches.add(match);
+        }
+        return matches;
+    }
+
+    /**
+     * scans the title and content of a slot for the search term
+     * @param term the search term
+     * @param slot the slot of the note
+     * @return the match, or null if the note is deleted or does not contain the search term
+     */
+    private NoteMatch matchSlot(SearchTerm term, int slot) {
+        if (deleted.get(slot)) return null;
+
+        char[] chunk = chunks[textChunks[slot]];
+        int offset = textOffsets[slot];
+        int[] titleMatches = term.findMatches(chunk, offset, titleLengths[slot]);
+        int[] contentMatches = term.findMatches(chunk, offset + titleLengths[slot], contentLengths[slot]);
+        PasswordManager.MatchType matchType = PasswordManager.getMatchType(titleMatches.length > 0, contentMatches.length > 0);
+        return matchType != PasswordManager.MatchType.NONE ? new NoteMatch(this, slot, matchType, titleMatches, contentMatches) : null;
+    }
+
+    /**
+     * @param noteIDs note IDs
+     * @return the slots of the notes with these IDs, last edited notes first; IDs without a note are skipped
+     */
+    public int[] getSlots(Collection<Integer> noteIDs) {
+        return noteIDs.stream()
+                .mapToInt(this::getSlot)
+                .filter(slot -> slot >= 0)
+                .boxed()
+                .sorted((a, b) -> isNewer(a, b) ? -1 : isNewer(b, a) ? 1 : 0)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * @param matches matches of a search in another copy of this store
+     * @return the same matches, referring to the slots of their notes in this store, or null if one of the notes is
+     * not in this store or was changed
+     */
+    ArrayList<NoteMatch> rebind(List<NoteMatch> matches) {
+        ArrayList<NoteMatch> rebound = new ArrayList<>(matches.size());
+        for (NoteMatch match : matches) {
+            int slot = getSlot(match.getNoteID());
+            if (slot < 0 || lastModDates[slot] != match.getLastModStamp()) return null;
+            rebound.add(match.inSlot(this, slot));
+        }
+        return rebound;
+    }
+
+    /**
+     * @return all notes, last edited notes first, as matches without search term. The list refers to the slots of
+     * the notes; a note is only created when its match is asked for it.
+     */
+    public List<NoteMatch> getAll() {
+        if (deletedCount == 0) {
+            return new SlotList(this, order, head, tail);
+        }
+        int[] slots = new int[size()];
+        int count = 0;
+        for (int i = head; i < tail; i++) {
+            if (!deleted.get(order[i])) slots[count++] = order[i];
+        }
+        return new SlotList(this, slots, 0, count);
+    }
+
+    /**
+     * unmodifiable list of the notes in a range of slots, see getAll()
+     */
+    private static class SlotList extends AbstractList<NoteMatch> implements RandomAccess {
+        private final NoteStore store;
+        private final int[] slots;
+        private final int from;
+        private final int to;
+
+        private SlotList(NoteStore store, int[] slots, int from, int to) {
+            this.store = store;
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public NoteMatch get(int index) {
+            Objects.checkIndex(index, size());
+            return new NoteMatch(store, slots[from + index], PasswordManager.MatchType.NONE, null, null);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * @return iterator over all notes, last edited notes first
+     */
+    @Override
+    public Iterator<Note> iterator() {
+        return new Iterator<>() {
+            private int position = nextLive(head);
+
+            @Override
+            public boolean hasNext() {
+                return position < tail;
+            }
+
+            @Override
+            public Note next() {
+                if (position >= tail) throw new NoSuchElementException();
+                Note note = getNote(order[position]);
+                position = nextLive(position + 1);
+                return note;
+            }
+        };
+    }
+
+    /**
+     * @param position position in the order array
+     * @return the first position from the given position with a slot that is not deleted, or tail if there is none
+     */
+    private int nextLive(int position) {
+        while (position < tail && deleted.get(order[position])) position++;
+        return position;
+    }
+
+    /**
+     * @param slot the slot of the note
+     * @return a new Note containing the note data in the slot
+     */
+    Note getNote(int slot) {
+        char[] chunk = chunks[textChunks[slot]];
+        int offset = textOffsets[slot];
+        int titleLength = titleLengths[slot];
+        return new Note(ids[slot],
+                new String(chunk, offset, titleLength),
+                new String(chunk, offset + titleLength, contentLengths[slot]),
+                createDates[slot],
+                lastModDates[slot],
+                contentPreviews.get(slot));
+    }
+
+    /**
+     * @param slot the slot of the note
+     * @return the note ID
+     */
+    int getId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * @param slot the slot of the note
+     * @return the note last modification date in milliseconds since January 1, 1970, 00:00:00 GMT
+     */
+    long getLastModStamp(int slot) {
+        return lastModDates[slot];
+    }
+
+    /**
+     * @param slot the slot of the note
+     * @return whether only the start of the note content is stored
+     */
+    boolean isContentPreview(int slot) {
+        return contentPreviews.get(slot);
+    }
+
+    /**
+     * @return true if the note in slot a was edited after the note in slot b. The note ID is used as tiebreaker.
+     */
+    private boolean isNewer(int a, int b) {
+        return lastModDates[a] != lastModDates[b] ? lastModDates[a] > lastModDates[b] : ids[a] > ids[b];
+    }
+
+    /**
+     * inserts a slot in the order array. Usually, the slot goes to the front (an edited note) or the back (a page of
+     * older notes), which does not move any other slots.
+     * @param slot the slot to insert
+     */
+    private void insertInOrder(int slot) {
+        if (head == 0 || tail == order.length) {
+            // re-center the slots in a larger array, so that there is space at both ends
+            int count = tail - head;
+            int[] newOrder = new int[Math.max(16, count * 2 + 2)];
+            int newHead = (newOrder.length - count) / 2;
+            System.arraycopy(order, head, newOrder, newHead, count);
+            order = newOrder;
+            head = newHead;
+            tail = newHead + count;
+        }
+
+        // binary search for the first slot that is older than the new slot
+        int low = head;
+        int high = tail;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (isNewer(slot, order[middle])) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        // move the shortest side of the order array to make space
+        if (low - head < tail - low) {
+            System.arraycopy(order, head, order, head - 1, low - head);
+            head--;
+            order[low - 1] = slot;
+        } else {
+            System.arraycopy(order, low, order, low + 1, tail - low);
+            tail++;
+            order[low] = slot;
+        }
+    }
+
+    /**
+     * moves all notes that are not deleted to new slots in last modification order, removing the deleted notes
+     */
+    private void compact() {
+        int count = size();
+        int capacity = Math.max(16, count * 2);
+        int[] oldTextChunks = textChunks;
+        int[] oldTextOffsets = textOffsets;
+        char[][] oldChunks = chunks;
+        int[] newIds = new int[capacity];
+        long[] newCreateDates = new long[capacity];
+        long[] newLastModDates = new long[capacity];
+        int[] newTextChunks = new int[capacity];
+        int[] newTextOffsets = new int[capacity];
+        int[] newTitleLengths = new int[capacity];
+        int[] newContentLengths = new int[capacity];
+        BitSet newContentPreviews = new BitSet();
+        int[] newOrder = new int[capacity + 2];
+        int newHead = (newOrder.length - count) / 2;
+
+        // the text is appended to new chunks
+        chunks = new char[4][];
+        chunkCount = 0;
+        chunkLength = 0;
+        lastChunkShared = false;
+        textLength = 0;
+
+        int newSlot = 0;
+        for (int i = head; i < tail; i++) {
+            int slot = order[i];
+            if (deleted.get(slot)) continue;
+
+            int length = titleLengths[slot] + contentLengths[slot];
+            int offset = reserveText(ids[slot], length);
+            System.arraycopy(oldChunks[oldTextChunks[slot]], oldTextOffsets[slot], chunks[chunkCount - 1], offset, length);
+            newIds[newSlot] = ids[slot];
+            newCreateDates[newSlot] = createDates[slot];
+            newLastModDates[newSlot] = lastModDates[slot];
+            newTextChunks[newSlot] = chunkCount - 1;
+            newTextOffsets[newSlot] = offset;
+            newTitleLengths[newSlot] = titleLengths[slot];
+            newContentLengths[newSlot] = contentLengths[slot];
+            newContentPreviews.set(newSlot, contentPreviews.get(slot));
+            newOrder[newHead + newSlot] = newSlot;
+            newSlot++;
+        }
+
+        ids = newIds;
+        createDates = newCreateDates;
+        lastModDates = newLastModDates;
+        textChunks = newTextChunks;
+        textOffsets = newTextOffsets;
+        titleLengths = newTitleLengths;
+        contentLengths = newContentLengths;
+        contentPreviews = newContentPreviews;
+        deleted = new BitSet();
+        slotCount = count;
+        deletedCount = 0;
+        deletedTextLength = 0;
+        order = newOrder;
+        head = newHead;
+        tail = newHead + count;
+
+        slotKeys = emptyKeys(Integer.highestOneBit(Math.max(16, count * 2)) * 2);
+        slotValues = new int[slotKeys.length];
+        for (int slot = 0; slot < count; slot++) {
+            putSlot(ids[slot], slot);
+        }
+    }
+
+    /**
+     * grows the column arrays if needed
+     * @param capacity the number of slots needed
+     */
+    private void ensureSlotCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        createDates = Arrays.copyOf(createDates, newCapacity);
+        lastModDates = Arrays.copyOf(lastModDates, newCapacity);
+        textChunks = Arrays.copyOf(textChunks, newCapacity);
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity);
+        titleLengths = Arrays.copyOf(titleLengths, newCapacity);
+        contentLengths = Arrays.copyOf(contentLengths, newCapacity);
+    }
+
+    /**
+     * makes space for the text of a slot at the end of the last chunk, or in a new chunk
+     * @param noteID the ID of the note the text belongs to
+     * @param length the number of characters
+     * @return the offset of the text in the last chunk
+     * @throws IllegalArgumentException the text does not fit in one array
+     */
+    private int reserveText(int noteID, long length) {
+        if (length > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("The title and content of note " + noteID + " have " + length
+                    + " characters, more than fit in memory (" + MAX_CHUNK_SIZE + ")");
+        }
+        char[] chunk = chunkCount > 0 && !lastChunkShared ? chunks[chunkCount - 1] : null;
+        long neededLength = chunkLength + length;
+        if (chunk == null || neededLength > chunk.length) {
+            if (chunk != null && neededLength <= CHUNK_SIZE) {
+                // the last chunk grows until it has CHUNK_SIZE characters
+                chunks[chunkCount - 1] = Arrays.copyOf(chunk, (int) Math.min(CHUNK_SIZE, Math.max(neededLength, chunk.length * 2L)));
+            } else {
+                if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, chunkCount * 2);
+                chunks[chunkCount++] = new char[(int) Math.max(length, 1024)];
+                chunkLength = 0;
+                lastChunkShared = false;
+            }
+        }
+
+        int offset = chunkLength;
+        chunkLength += (int) length;
+        textLength += length;
+        return offset;
+    }
+
+    /**
+     * @param capacity the capacity of the hash table, a power of two
+     * @return hash table keys without any key
+     */
+    private static int[] emptyKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    /**
+     * @param noteID the note ID
+     * @return the first index in the hash table to look for the note ID
+     */
+    private int hashIndex(int noteID) {
+        // spread the bits, since note IDs are mostly consecutive
+        int hash = noteID * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (slotKeys.length - 1);
+    }
+
+    /**
+     * @param noteID the note ID
+     * @return the slot of the note, or -1 if there is no note with this ID
+     */
+    private int getSlot(int noteID) {
+        for (int i = hashIndex(noteID); slotKeys[i] != EMPTY; i = (i + 1) & (slotKeys.length - 1)) {
+            if (slotKeys[i] == noteID) return slotValues[i];
+        }
+        return -1;
+    }
+
+    /**
+     * adds the slot of a note ID to the hash table, the note ID may not be in the table yet
+     * @param noteID the note ID
+     * @param slot the slot of the note
+     */
+    private void putSlot(int noteID, int slot) {
+        if (size() * 2 > slotKeys.length) {
+            // keep the table at most half full, so that lookups stay short
+            int[] oldKeys = slotKeys;
+            int[] oldValues = slotValues;
+            slotKeys = emptyKeys(oldKeys.length * 2);
+            slotValues = new int[slotKeys.length];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) putSlot(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        int i = hashIndex(noteID);
+        while (slotKeys[i] != EMPTY) i = (i + 1) & (slotKeys.length - 1);
+        slotKeys[i] = noteID;
+        slotValues[i] = slot;
+    }
+
+    /**
+     * removes a note ID from the hash table
+     * @param noteID the note ID
+     * @return the slot of the note, or -1 if there is no note with this ID
+     */
+    private int removeSlot(int noteID) {
+        int mask = slotKeys.length - 1;
+        int i = hashIndex(noteID);
+        while (slotKeys[i] != noteID) {
+            if (slotKeys[i] == EMPTY) return -1;
+            i = (i + 1) & mask;
+        }
+        int slot = slotValues[i];
+
+        // shift the following keys back, so that no lookup stops early at the now empty position
+        int empty = i;
+        for (int j = (i + 1) & mask; slotKeys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = hashIndex(slotKeys[j]);
+            // the key at j can move to the empty position if its home position is not between the empty position and j
+            if (((j - home) & mask) >= ((j - empty) & mask)) {
+                slotKeys[empty] = slotKeys[j];
+                slotValues[empty] = slotValues[j];
+                empty = j;
+            }
+        }
+        slotKeys[empty] = EMPTY;
+        return slot;
+    }
+}
@@ -1,8 +1,10 @@
 package App;
 
 import Database.Database;
-import GUI.EditNote;
+import Database.NoteWriter;
 import GUI.PasswordManagerGUI;
+import GUI.UpsertNote;
+import GUI.UpsertNotePool;
 
 import javax.swing.*;
 import java.awt.*;
@@ -11,8 +13,11 @@ import java.awt.event.MouseEvent;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Comparator;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The main class of the PasswordManager app. Gets input from the PasswordManagerGUI class and makes database changes using
@@ -22,12 +27,41 @@ public class PasswordManager {
 
     private final PasswordManagerGUI passwordManagerGUI;
     private final Database db = new Database();
-    private ArrayList<Note> notes;
+    // inserts, updates and deletes notes in the database on its own thread
+    private final NoteWriter noteWriter = new NoteWriter(db);
+    // the current snapshot of the notes, or null if they could not be retrieved. Searches read it without locking;
+    // changes are made under writeLock and publish a new version.
+    private final AtomicReference<NoteIndex> notes = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private final SearchCache searchCache = new SearchCache();
+    // the last modification date and ID of the last loaded note when PAGE_SIZE is enabled, the next page starts after it
+    private long pageLastModDate = Long.MAX_VALUE;
+    private int pageNoteID = Integer.MAX_VALUE;
+    private volatile boolean moreNotes = false;
+    // only keep the start of every note content in memory, enabled with -Dpasswordmanager.lazyContent=true
+    private static final boolean LAZY_CONTENT = Boolean.getBoolean("passwordmanager.lazyContent");
+    // load the notes in pages of this size while the user scrolls, enabled with -Dpasswordmanager.pageSize=<size>
+    private static final int PAGE_SIZE = Integer.getInteger("passwordmanager.pageSize", 0);
+    // search with the SQLite full-text search index instead of in memory, enabled with -Dpasswordmanager.search=fts.
+    // Without all notes and their full content in memory, the notes can only be searched with the full-text search index.
+    private static final boolean FTS_SEARCH = LAZY_CONTENT || PAGE_SIZE > 0 || "fts".equals(System.getProperty("passwordmanager.search"));
+    private static final int PREVIEW_LENGTH = 200;
+    // the number of last edited notes that are retrieved first when the app starts, so they can be shown before all
+    // notes are retrieved
+    private static final int FIRST_NOTES = 100;
+    private static final int CONTENT_CACHE_SIZE = 64;
+    // the full contents of the most recently viewed notes when LAZY_CONTENT is enabled, keyed by note ID
+    private final LinkedHashMap<Integer, String> contentCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CONTENT_CACHE_SIZE;
+        }
+    };
 
     /**
      * determines the searchTerm matches in the note title and content
      */
-    enum MatchType {
+    public enum MatchType {
         NONE,
         CONTENT,
         TITLE,
@@ -44,96 +78,259 @@ public class PasswordManager {
     }
 
     /**
-     * Constructor
+     * Constructor, the database is opened by open()
      * @param passwordManagerGUI instance of PasswordManagerGUI
      */
     public PasswordManager(PasswordManagerGUI passwordManagerGUI) {
         this.passwordManagerGUI = passwordManagerGUI;
-        // create the database if it doesn't exist already
+        // there are no notes until open() retrieved them
+        notes.set(new NoteIndex(new ArrayList<>(), !FTS_SEARCH));
+    }
+
+    /**
+     * creates the database if it doesn't exist already, and retrieves the notes. The last edited notes are retrieved
+     * first, so they can be shown while the other notes are retrieved. Takes a while for large databases, so it should
+     * not be called on the Event Dispatch Thread.
+     * @param firstNotesListener called when the database is ready and the first notes are retrieved, on the thread
+     *                           that called open()
+     */
+    public void open(Runnable firstNotesListener) {
         db.createDatabase();
+        if (FTS_SEARCH) db.createSearchIndex();
+        if (PAGE_SIZE > 0) {
+            // the first page is all there is to retrieve at startup
+            retrieveNotes();
+            firstNotesListener.run();
+            return;
+        }
+
+        retrieveFirstNotes();
+        firstNotesListener.run();
         retrieveNotes();
     }
 
     /**
-     * retrieves all notes from the database
+     * retrieves the FIRST_NOTES last edited notes. retrieveNotes() replaces them with all notes.
+     */
+    private void retrieveFirstNotes() {
+        synchronized (writeLock) {
+            ArrayList<Note> firstNotes = db.retrieveNotePage(Long.MAX_VALUE, Integer.MAX_VALUE, FIRST_NOTES, LAZY_CONTENT ? PREVIEW_LENGTH : 0);
+            // on a database error there are no first notes to show, retrieveNotes() reports the error
+            if (firstNotes == null) return;
+
+            NoteIndex firstIndex = new NoteIndex(firstNotes, !FTS_SEARCH);
+            searchCache.clear(firstIndex.getVersion());
+            notes.set(firstIndex);
+        }
+    }
+
+    /**
+     * retrieves all notes from the database. After this, the notes are kept up-to-date in memory by the note
+     * creation, edit and deletion methods.
      */
     public void retrieveNotes() {
-        notes = db.retrieveNotes();
-        if (notes != null) {
-            // sort the notes so that the last edited notes are listed first (with the highest LastModStamp)
-            notes.sort(Comparator.comparing(Note::getLastModStamp).reversed());
+        synchronized (writeLock) {
+            if (PAGE_SIZE > 0) {
+                // only retrieve the first page, the other pages are retrieved with loadNextPage() while scrolling
+                notes.set(new NoteIndex(new ArrayList<>(), false));
+                pageLastModDate = Long.MAX_VALUE;
+                pageNoteID = Integer.MAX_VALUE;
+                if (!loadNextPage()) notes.set(null);
+                return;
+            }
+
+            ArrayList<Note> retrievedNotes = LAZY_CONTENT ? db.retrieveNoteSummaries(PREVIEW_LENGTH) : db.retrieveNotes();
+            // the NoteIndex keeps the notes sorted so that the last edited notes are listed first (with the highest LastModStamp)
+            NoteIndex retrievedIndex = retrievedNotes != null ? new NoteIndex(retrievedNotes, !FTS_SEARCH) : null;
+            if (retrievedIndex != null) searchCache.clear(retrievedIndex.getVersion());
+            notes.set(retrievedIndex);
         }
     }
 
     /**
-     * gets notes that contain the searchTerm in the note title or content
-     * @param searchTerm the search term
-     * @return ArrayList containing all note panes
+     * retrieves the next page of notes from the database when PAGE_SIZE is enabled. The database returns the notes in
+     * last modification order, starting after the last note of the previous page. Notes that are edited or created
+     * after that are newer than all retrieved pages, so they are never retrieved twice; they are added to the notes
+     * when they are written (see createNewNote() and editNote()), also when they were on a page that was not retrieved.
+     * @return true if the page was retrieved, false on a database error
      */
-    public ArrayList<JPanel> getNotes(String searchTerm) {
-        searchTerm = searchTerm.strip();
-        ArrayList<JPanel> notePanes = new ArrayList<>();
-
-        if (notes != null) {
-            // the notes were successfully retrieved from the database
-            if (searchTerm.equals("")) {
-                // no search term input; return all notes in JPanels to the GUI
-                for (Note note : notes) {
-                    notePanes.add(createNotePane(note, searchTerm, MatchType.NONE));
-                }
-            } else {
-                // search term input was given; only return the notes that contain the search term in the title or content
-                for (Note note : notes) {
-                    if (Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE).matcher(note.getContent()).find() && Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE).matcher(note.getTitle()).find()) {
-                        // title and content contain searchTerm
-                        notePanes.add(createNotePane(note, searchTerm, MatchType.BOTH));
-                    } else if (Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE).matcher(note.getContent()).find()) {
-                        // only content contains the searchTerm
-                        notePanes.add(createNotePane(note, searchTerm, MatchType.CONTENT));
-                    } else if (Pattern.compile(Pattern.quote(searchTerm), Pattern.CASE_INSENSITIVE).matcher(note.getTitle()).find()) {
-                        // only title contains the searchTerm
-                        notePanes.add(createNotePane(note, searchTerm, MatchType.TITLE));
-                    }
+    public boolean loadNextPage() {
+        synchronized (writeLock) {
+            ArrayList<Note> page = db.retrieveNotePage(pageLastModDate, pageNoteID, PAGE_SIZE, LAZY_CONTENT ? PREVIEW_LENGTH : 0);
+            NoteIndex currentNotes = notes.get();
+            if (page == null || currentNotes == null) {
+                // stop loading pages, otherwise every scroll would retry
+                moreNotes = false;
+                return false;
+            }
+
+            if (!page.isEmpty()) {
+                Note lastNote = page.get(page.size() - 1);
+                pageLastModDate = lastNote.getLastModStamp();
+                pageNoteID = lastNote.getId();
+            }
+            moreNotes = page.size() == PAGE_SIZE;
+            // the whole page is added in one new version
+            NoteIndex nextNotes = currentNotes.withNotes(page);
+            searchCache.clear(nextNotes.getVersion());
+            notes.set(nextNotes);
+            return true;
+        }
+    }
+
+    /**
+     * @return true if there might be notes in the database that are not retrieved yet, see loadNextPage()
+     */
+    public boolean hasMoreNotes() {
+        return moreNotes;
+    }
+
+    /**
+     * gets the full content of a note. When LAZY_CONTENT is enabled, the content is fetched from the database if it
+     * is not one of the recently viewed notes.
+     * @param note instance of Note
+     * @return the full note content
+     */
+    public String getContent(Note note) {
+        if (!note.isContentPreview()) {
+            return note.getContent();
+        }
+
+        synchronized (contentCache) {
+            String content = contentCache.get(note.getId());
+            if (content == null) {
+                content = db.retrieveNoteContent(note.getId());
+                if (content == null) {
+                    // the content could not be fetched because of a database error, show the preview instead
+                    return note.getContent();
                 }
+                contentCache.put(note.getId(), content);
             }
-            return notePanes;
-        } else {
+            return content;
+        }
+    }
+
+    /**
+     * gets the note as it should be kept in memory; when LAZY_CONTENT is enabled, long contents are cut off to a preview
+     * and the full content is added to the content cache
+     * @param note instance of Note with the full content
+     * @return instance of Note to keep in memory
+     */
+    private Note toIndexedNote(Note note) {
+        String content = note.getContent();
+        if (!LAZY_CONTENT || content.length() <= PREVIEW_LENGTH) {
+            return note;
+        }
+
+        synchronized (contentCache) {
+            contentCache.put(note.getId(), content);
+        }
+        return new Note(note.getId(), note.getTitle(), content.substring(0, PREVIEW_LENGTH), note.getCreateStamp(),
+                note.getLastModStamp(), true);
+    }
+
+    /**
+     * finds the notes that contain the searchTerm in the note title or content. Can be called from a background
+     * thread without locking, since it searches the current snapshot of the notes; when that thread is interrupted
+     * the search stops early.
+     * @param searchTerm the search term
+     * @return List containing all matching notes (last edited notes first), or null on a database error
+     */
+    public List<NoteMatch> getNotes(String searchTerm) {
+        searchTerm = searchTerm.strip();
+        // the whole search uses this snapshot, even if notes are changed in the meantime
+        NoteIndex snapshot = notes.get();
+        if (snapshot == null) {
             // the notes could not be retrieved because of a database error
             return null;
         }
+
+        ArrayList<NoteMatch> matches;
+        if (searchTerm.equals("")) {
+            // no search term input; return all notes. Their titles and contents are only copied out of the snapshot
+            // for the note cards that are shown.
+            return snapshot.getAll();
+        } else if (FTS_SEARCH) {
+            // let SQLite find the candidates using its full-text search index, they are classified the same way as in
+            // the in-memory search
+            return db.searchNotes(new SearchTerm(searchTerm), LAZY_CONTENT ? PREVIEW_LENGTH : 0);
+        } else {
+            // search term input was given; only return the notes that contain the search term in the title or content
+            SearchTerm term = new SearchTerm(searchTerm);
+            long version = snapshot.getVersion();
+            ArrayList<NoteMatch> cachedMatches = searchCache.get(term, version);
+            if (cachedMatches != null) {
+                return new ArrayList<>(cachedMatches);
+            }
+
+            // when the user typed on, only the notes that matched the previous search term can match. Otherwise,
+            // the NoteIndex searches the candidates of its trigram index, or all notes.
+            ArrayList<NoteMatch> previousMatches = searchCache.getContaining(term, version);
+            if (previousMatches != null) {
+                matches = snapshot.search(term, previousMatches);
+            } else {
+                matches = snapshot.search(term);
+            }
+
+            if (matches == null) {
+                // a newer search replaced this one, its (incomplete) result will not be shown or cached
+                return new ArrayList<>();
+            }
+            searchCache.put(term, new ArrayList<>(matches), version);
+        }
+        return matches;
+    }
+
+    /**
+     * empties the search cache, so that the next getNotes() calls search the notes again
+     */
+    public void clearSearchCache() {
+        synchronized (writeLock) {
+            NoteIndex currentNotes = notes.get();
+            if (currentNotes != null) searchCache.clear(currentNotes.getVersion());
+        }
+    }
+
+    /**
+     * @param titleMatch whether the note title contains the searchTerm
+     * @param contentMatch whether the note content contains the searchTerm
+     * @return the MatchType
+     */
+    public static MatchType getMatchType(boolean titleMatch, boolean contentMatch) {
+        if (titleMatch && contentMatch) {
+            // title and content contain searchTerm
+            return MatchType.BOTH;
+        } else if (contentMatch) {
+            // only content contains the searchTerm
+            return MatchType.CONTENT;
+        } else if (titleMatch) {
+            // only title contains the searchTerm
+            return MatchType.TITLE;
+        }
+        return MatchType.NONE;
     }
 
     /**
      * creates a JPanel containing a JTextArea containing the note content, a JLabel containing the note title, and
      * another JLabel containing the note last edit date. The title label will be given an onclick event that allows
      * the note to be edited.
-     * @param note instance of Note containing all note data
+     * @param match the note, and whether highlighting should be done in note title or content, or both or none
      * @param searchTerm the search term
-     * @param matchType decides if highlighting should be done in note title or content, or both or none.
      * @return the note pane
      */
-    public JPanel createNotePane(Note note, String searchTerm, MatchType matchType) {
+    public JPanel createNotePane(NoteMatch match, SearchTerm searchTerm) {
+        Note note = match.getNote();
         JPanel notePanel = new JPanel();
         notePanel.setLayout(new BoxLayout(notePanel, BoxLayout.Y_AXIS));
 
         JTextArea contentArea = new JTextArea(13, 18);
-        contentArea.setText(note.getContent());
+        String content = getContent(note);
+        contentArea.setText(content);
         contentArea.setLineWrap(true);
         JScrollPane scrollPane = new JScrollPane(contentArea);
         scrollPane.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel noteTitle = new JLabel();
-        String title = note.getTitle();
-        if (title.equals("")) {
-            // if the note was saved without a title, give it a default title containing the creation date
-            noteTitle.setText("Note " + note.getCreateDate().substring(0, note.getCreateDate().lastIndexOf(" ")));
-        } else if (title.length() <= 30) {
-            // the entire title fits
-            noteTitle.setText(title);
-        } else {
-            // title is too long, cut-off the title with "..."
-            noteTitle.setText(note.reduceTitleLength());
-        }
+        JLabel noteTitle = new JLabel(getTitleText(match, searchTerm));
         noteTitle.setAlignmentX(Component.CENTER_ALIGNMENT);
         // to ensure the title is centered horizontally after highlighting in the title is done
         noteTitle.setHorizontalAlignment(SwingConstants.CENTER);
@@ -142,27 +339,14 @@ public class PasswordManager {
             @Override
             public void mouseClicked(MouseEvent e) {
                 // assign an on-click method to the note title that opens a window that allows the note to be edited
-                EditNote editNote = new EditNote(note.getId());
-                editNote.setNoteTitle(note.getTitle());
-                editNote.setNoteContent(note.getContent());
-                editNote.setPasswordManager(PasswordManager.this);
-                editNote.setPasswordManagerGUI(passwordManagerGUI);
+                openNote(note);
             }
         });
 
         JLabel noteLastModDate = new JLabel(note.getLastModDate());
         noteLastModDate.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        // do the searchTerm highlighting in the note content, title, both or neither
-        switch (matchType) {
-            case CONTENT -> note.highlightContent(contentArea, searchTerm);
-            case TITLE -> noteTitle.setText(note.highlightTitle(searchTerm));
-            case BOTH -> {
-                note.highlightContent(contentArea, searchTerm);
-                noteTitle.setText(note.highlightTitle(searchTerm));
-            }
-            case NONE -> {}
-        }
+        highlightContent(contentArea, match, searchTerm, content);
 
         notePanel.add(scrollPane);
         notePanel.add(noteTitle);
@@ -171,19 +355,130 @@ public class PasswordManager {
     }
 
     /**
-     * creates a new Note that will then be inserted into the database
+     * gets the text of the title label of a note, with the searchTerm matches highlighted if the title contains the
+     * searchTerm
+     * @param match the note, and whether highlighting should be done in the note title
+     * @param searchTerm the search term
+     * @return the title text, which is HTML when matches are highlighted
+     */
+    public String getTitleText(NoteMatch match, SearchTerm searchTerm) {
+        int[] titleMatches = getTitleMatches(match, searchTerm);
+        if (titleMatches != null) {
+            return match.getNote().highlightTitle(titleMatches, searchTerm.length());
+        }
+        return getTitleText(match.getNote());
+    }
+
+    /**
+     * gets the text of the title label of a note, without highlighting
+     * @param note instance of Note
+     * @return the title text
+     */
+    public String getTitleText(Note note) {
+        String title = note.getTitle();
+        if (title.equals("")) {
+            // if the note was saved without a title, give it a default title containing the creation date
+            return "Note " + note.getCreateDate().substring(0, note.getCreateDate().lastIndexOf(" "));
+        } else if (title.length() <= 30) {
+            // the entire title fits
+            return title;
+        }
+        // title is too long, cut-off the title with "..."
+        return note.reduceTitleLength();
+    }
+
+    /**
+     * @param match the note, and whether highlighting should be done in the note title
+     * @param searchTerm the search term
+     * @return the start indices of the searchTerm matches in the note title, or null if the title does not contain the
+     * searchTerm
+     */
+    public int[] getTitleMatches(NoteMatch match, SearchTerm searchTerm) {
+        MatchType matchType = match.getMatchType();
+        if (matchType != MatchType.TITLE && matchType != MatchType.BOTH) {
+            return null;
+        }
+        // the matches are only searched again if the search did not find them in this text (database search)
+        int[] titleMatches = match.getTitleMatches();
+        return titleMatches != null ? titleMatches : searchTerm.findMatches(match.getNote().getTitle());
+    }
+
+    /**
+     * highlights the searchTerm matches in the note content, if the content contains the searchTerm
+     * @param contentArea the JTextArea showing the content
+     * @param match the note, and whether highlighting should be done in the note content
+     * @param searchTerm the search term
+     * @param content the text of the contentArea; the full note content, or only the start of it
+     */
+    public void highlightContent(JTextArea contentArea, NoteMatch match, SearchTerm searchTerm, String content) {
+        int[] contentMatches = getContentMatches(match, searchTerm, content);
+        if (contentMatches != null) {
+            match.getNote().highlightContent(contentArea, contentMatches, searchTerm.length());
+        }
+    }
+
+    /**
+     * @param match the note, and whether highlighting should be done in the note content
+     * @param searchTerm the search term
+     * @param content the shown text; the full note content, or only the start of it
+     * @return the start indices of the searchTerm matches in the shown text, or null if the content does not contain
+     * the searchTerm
+     */
+    public int[] getContentMatches(NoteMatch match, SearchTerm searchTerm, String content) {
+        MatchType matchType = match.getMatchType();
+        if (matchType != MatchType.CONTENT && matchType != MatchType.BOTH) {
+            return null;
+        }
+        // the matches of the search can be used if the text is (the start of) the searched text, otherwise they are
+        // searched again (database search, or the full content of a content preview)
+        int[] contentMatches = match.getContentMatches();
+        if (contentMatches == null || !match.getNote().getContent().startsWith(content)) {
+            contentMatches = searchTerm.findMatches(content);
+        }
+        return contentMatches;
+    }
+
+    /**
+     * opens a window that allows the note to be edited
+     * @param note instance of Note
+     */
+    public void openNote(Note note) {
+        UpsertNote editNote = UpsertNotePool.open(note.getId(), this, passwordManagerGUI);
+        editNote.setNoteTitle(note.getTitle());
+        editNote.setNoteContent(getContent(note));
+    }
+
+    /**
+     * creates a new Note that will then be inserted into the database by the NoteWriter. The note is added to the
+     * in-memory notes when it is inserted.
      * @param title the note title
      * @param content the note content
-     * @return the status of the note creation
+     * @return the status of the note creation, completed on the writer thread
      */
-    public UpsertStatus createNewNote(String title, String content) {
-        content = content.strip();
-        if (content.equals("")) {
-            return UpsertStatus.NO_CONTENT;
+    public CompletableFuture<UpsertStatus> createNewNote(String title, String content) {
+        String strippedContent = content.strip();
+        if (strippedContent.equals("")) {
+            return CompletableFuture.completedFuture(UpsertStatus.NO_CONTENT);
         }
 
         long date = getCurrentDate();
-        return db.insertNewNote(new Note(-1, title.strip(), content, date, date));
+        String strippedTitle = title.strip();
+        return noteWriter.insert(new Note(-1, strippedTitle, strippedContent, date, date)).thenApply(noteID -> {
+            if (noteID < 0) {
+                return UpsertStatus.FAILED;
+            }
+
+            synchronized (writeLock) {
+                NoteIndex currentNotes = notes.get();
+                if (currentNotes != null) {
+                    Note note = toIndexedNote(new Note(noteID, strippedTitle, strippedContent, date, date));
+                    NoteIndex nextNotes = currentNotes.withNote(note);
+                    searchCache.invalidate(null, note, nextNotes);
+                    notes.set(nextNotes);
+                }
+            }
+            return UpsertStatus.SUCCESS;
+        });
     }
 
     /**
@@ -197,22 +492,109 @@ public class PasswordManager {
 
     /**
      * allows a note to get edited. If the content is empty, prompt the user if they want to delete the note in
-     * EditNote
+     * UpsertNote. The note is updated in the database by the NoteWriter, and in memory when the update is written.
      * @param noteID the note ID in the database
      * @param title the note title
      * @param content the note content
-     * @return the edit status
+     * @return the edit status, completed on the writer thread
      */
-    public UpsertStatus editNote(int noteID, String title, String content) {
-        return db.updateNote(new Note(noteID, title.strip(), content.strip(), -1, getCurrentDate()));
+    public CompletableFuture<UpsertStatus> editNote(int noteID, String title, String content) {
+        // the create date is not changed by an update, the note in memory keeps its own
+        Note note = new Note(noteID, title.strip(), content.strip(), -1, getCurrentDate());
+
+        return noteWriter.update(note).thenApply(status -> {
+            if (status == UpsertStatus.SUCCESS) {
+                synchronized (contentCache) {
+                    contentCache.remove(noteID);
+                }
+                // the edited note now has the highest last modification date, so it moves to the front
+                synchronized (writeLock) {
+                    NoteIndex currentNotes = notes.get();
+                    if (currentNotes == null) return status;
+                    // the note may have been changed since it was opened. When updates were combined by the
+                    // NoteWriter, every edit gets the same status, and only the last edit may be kept.
+                    Note currentNote = currentNotes.get(noteID);
+                    Note editedNote;
+                    if (currentNote != null) {
+                        if (currentNote.getLastModStamp() > note.getLastModStamp()) return status;
+                        editedNote = new Note(noteID, note.getTitle(), note.getContent(), currentNote.getCreateStamp(), note.getLastModStamp());
+                    } else {
+                        // the note was opened from a search in the database and is on a page that is not retrieved
+                        // yet. Its new date is newer than all pages, so loadNextPage() will never retrieve it.
+                        editedNote = db.retrieveNote(noteID);
+                        // it was deleted in the meantime, or could not be read because of a database error
+                        if (editedNote == null) return status;
+                    }
+                    Note indexedNote = toIndexedNote(editedNote);
+                    NoteIndex nextNotes = currentNotes.withNote(indexedNote);
+                    searchCache.invalidate(currentNote, indexedNote, nextNotes);
+                    notes.set(nextNotes);
+                }
+            }
+            return status;
+        });
     }
 
     /**
-     * allows a note to be deleted from the database based on the ID of the note in the database
+     * allows a note to be deleted from the database based on the ID of the note in the database. The note is deleted
+     * by the NoteWriter, and removed from memory when the deletion is written.
      * @param noteID the note ID
-     * @return the status of the deletion (either SUCCESS or FAILED)
+     * @return the status of the deletion (either SUCCESS or FAILED), completed on the writer thread
+     */
+    public CompletableFuture<UpsertStatus> deleteNote(int noteID) {
+        return noteWriter.delete(noteID).thenApply(status -> {
+            if (status == UpsertStatus.SUCCESS) {
+                synchronized (writeLock) {
+                    NoteIndex currentNotes = notes.get();
+                    Note oldNote = currentNotes != null ? currentNotes.get(noteID) : null;
+                    if (oldNote != null) {
+                        NoteIndex nextNotes = currentNotes.withoutNote(noteID);
+                        searchCache.invalidate(oldNote, null, nextNotes);
+                        notes.set(nextNotes);
+                    }
+                }
+                synchronized (contentCache) {
+                    contentCache.remove(noteID);
+                }
+            }
+            return status;
+        });
+    }
+
+    /**
+     * autosaves the unsaved title and content of a note that is being created or edited. The save is written by the
+     * NoteWriter, combined with the newer saves of the same draft that are queued before it is written.
+     * @param draft the draft of the note
+     * @param title the unsaved note title
+     * @param content the unsaved note content
+     * @return the status of the save, completed on the writer thread
+     */
+    public CompletableFuture<UpsertStatus> saveDraft(Draft draft, String title, String content) {
+        return noteWriter.saveDraft(draft, title, content, getCurrentDate());
+    }
+
+    /**
+     * deletes a draft, after the note was saved or its changes were discarded
+     * @param draft the draft of the note
+     * @return the status of the deletion, completed on the writer thread
+     */
+    public CompletableFuture<UpsertStatus> discardDraft(Draft draft) {
+        return noteWriter.deleteDraft(draft);
+    }
+
+    /**
+     * gets the drafts that were not saved or discarded, e.g. because the app was closed while notes were edited
+     * @return ArrayList containing the drafts, or null on a database error
+     */
+    public ArrayList<Draft> getDrafts() {
+        return db.retrieveDrafts();
+    }
+
+    /**
+     * writes the queued note changes and closes the database connection, should be called when the app exits
      */
-    public UpsertStatus deleteNote(int noteID) {
-        return db.deleteNote(noteID);
+    public void close() {
+        noteWriter.close();
+        db.close();
     }
 }
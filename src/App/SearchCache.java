@@ -0,0 +1,156 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * caches the results of the most recent searches, so that switching back to an earlier search term is a lookup
+ * instead of a scan. When the user types on, the new search term contains a previous one, so only the notes that
+ * matched the previous search term can match the new one. Those notes are then searched instead of all notes.
+ * <p>
+ * When a note is inserted, updated or deleted, only the results of the search terms that the old or new version of the
+ * note matches are removed; the other results are not affected by the change. They are moved to the notes of the new
+ * version, so that narrowing them searches the same slots as a new search, and the old version is not kept in memory.
+ * <p>
+ * The results belong to one version of the NoteIndex snapshot. A search on another version does not use them, and its
+ * result is not cached, so that the results of a search that ran while a note was changed are never mixed in.
+ */
+public class SearchCache {
+
+    private static final int MAX_ENTRIES = 16;
+
+    /**
+     * a cached search result
+     */
+    private static class Entry {
+        private final SearchTerm term;
+        private final ArrayList<NoteMatch> matches;
+
+        private Entry(SearchTerm term, ArrayList<NoteMatch> matches) {
+            this.term = term;
+            this.matches = matches;
+        }
+    }
+
+    // keyed by the case-folded search term, in least recently used order so that the eldest entry can be removed
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // the NoteIndex version of the cached results
+    private long version = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * gets the cached result of the search term itself
+     * @param term the search term
+     * @param version the NoteIndex version that is searched
+     * @return the matching notes, or null if the result is not cached
+     */
+    public synchronized ArrayList<NoteMatch> get(SearchTerm term, long version) {
+        Entry entry = version == this.version ? entries.get(term.getFoldedTerm()) : null;
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.matches;
+    }
+
+    /**
+     * gets the cached result of the longest search term that is contained in the given search term. Every note that
+     * matches the given search term is in this result.
+     * @param term the search term
+     * @param version the NoteIndex version that is searched
+     * @return the matching notes of the contained search term, or null if there is none
+     */
+    public synchronized ArrayList<NoteMatch> getContaining(SearchTerm term, long version) {
+        if (version != this.version) {
+            return null;
+        }
+
+        String foldedTerm = term.getFoldedTerm();
+        Entry longest = null;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (foldedTerm.contains(entry.getKey()) && (longest == null || entry.getKey().length() > longest.term.length())) {
+                longest = entry.getValue();
+            }
+        }
+        return longest != null ? longest.matches : null;
+    }
+
+    /**
+     * caches the result of a search
+     * @param term the search term
+     * @param matches the matching notes
+     * @param version the NoteIndex version that was searched
+     */
+    public synchronized void put(SearchTerm term, ArrayList<NoteMatch> matches, long version) {
+        if (version != this.version) return;
+        entries.put(term.getFoldedTerm(), new Entry(term, matches));
+    }
+
+    /**
+     * removes the results that change because a note was inserted, updated or deleted. The other results are kept
+     * for the new version. Should be called before the new version is used for searches.
+     * @param oldNote the note before the change, or null if the note was inserted
+     * @param newNote the note after the change, or null if the note was deleted
+     * @param notes the NoteIndex version that contains the change
+     */
+    public synchronized void invalidate(Note oldNote, Note newNote, NoteIndex notes) {
+        version = notes.getVersion();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            SearchTerm term = entry.getValue().term;
+            if ((oldNote != null && matches(term, oldNote)) || (newNote != null && matches(term, newNote))) {
+                iterator.remove();
+                continue;
+            }
+            // the result refers to the slots of the previous version
+            ArrayList<NoteMatch> matches = notes.rebind(entry.getValue().matches);
+            if (matches != null) {
+                entry.setValue(new Entry(term, matches));
+            } else {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * clears the cache, e.g. when all notes are reloaded
+     * @param version the NoteIndex version of the results that will be cached
+     */
+    public synchronized void clear(long version) {
+        this.version = version;
+        entries.clear();
+    }
+
+    /**
+     * @return the number of searches whose result was cached
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of searches whose result was not cached
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @param term the search term
+     * @param note instance of Note
+     * @return true if the search term matches the note title or content
+     */
+    private static boolean matches(SearchTerm term, Note note) {
+        return term.contains(note.getTitle()) || term.contains(note.getContent());
+    }
+}
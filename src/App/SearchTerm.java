@@ -0,0 +1,147 @@
+package App;
+
+import java.util.Arrays;
+
+/**
+ * a search term that is case-folded once, so that it can be matched against any number of note titles and contents
+ * without compiling a regex or making a lowercase copy of the text. The matches are returned as the start indices of
+ * the matching ranges, which all have the length of the search term.
+ */
+public class SearchTerm {
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    private final String term;
+    private final char[] foldedTerm;
+
+    /**
+     * Constructor
+     * @param term the search term
+     */
+    public SearchTerm(String term) {
+        this.term = term;
+        foldedTerm = new char[term.length()];
+        for (int i = 0; i < foldedTerm.length; i++) {
+            foldedTerm[i] = fold(term.charAt(i));
+        }
+    }
+
+    /**
+     * @return the search term
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * @return the case-folded search term; search terms that match the same text have the same folded term
+     */
+    public String getFoldedTerm() {
+        return new String(foldedTerm);
+    }
+
+    /**
+     * @return the length of the search term, and therefore of every match
+     */
+    public int length() {
+        return foldedTerm.length;
+    }
+
+    /**
+     * finds all non-overlapping, case-insensitive matches of the search term in the text in a single pass
+     * @param text the text to search in
+     * @return the start indices of the matches in ascending order, or an empty array if there are none
+     */
+    public int[] findMatches(CharSequence text) {
+        if (foldedTerm.length == 0) {
+            return NO_MATCHES;
+        }
+
+        int[] matches = NO_MATCHES;
+        int matchCount = 0;
+        // continue after every match, so matches don't overlap
+        for (int i = indexIn(text, 0); i >= 0; i = indexIn(text, i + foldedTerm.length)) {
+            if (matchCount == matches.length) matches = Arrays.copyOf(matches, Math.max(4, matchCount * 2));
+            matches[matchCount++] = i;
+        }
+        return matchCount == matches.length ? matches : Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     * finds all non-overlapping, case-insensitive matches of the search term in a part of a character buffer
+     * @param text the buffer to search in
+     * @param offset the start of the text in the buffer
+     * @param length the length of the text
+     * @return the start indices of the matches relative to offset in ascending order, or an empty array if there are none
+     */
+    public int[] findMatches(char[] text, int offset, int length) {
+        if (foldedTerm.length == 0) {
+            return NO_MATCHES;
+        }
+
+        int[] matches = NO_MATCHES;
+        int matchCount = 0;
+        int end = offset + length;
+        for (int i = indexIn(text, offset, end); i >= 0; i = indexIn(text, i + foldedTerm.length, end)) {
+            if (matchCount == matches.length) matches = Arrays.copyOf(matches, Math.max(4, matchCount * 2));
+            matches[matchCount++] = i - offset;
+        }
+        return matchCount == matches.length ? matches : Arrays.copyOf(matches, matchCount);
+    }
+
+    /**
+     * @param text the text to search in
+     * @return true if the text contains the search term (case-insensitive)
+     */
+    public boolean contains(CharSequence text) {
+        return foldedTerm.length > 0 && indexIn(text, 0) >= 0;
+    }
+
+    /**
+     * finds the first case-insensitive match of the search term in the text
+     * @param text the text to search in
+     * @param from the index to start searching from
+     * @return the start index of the match, or -1 if there is none
+     */
+    private int indexIn(CharSequence text, int from) {
+        char first = foldedTerm[0];
+        int last = text.length() - foldedTerm.length;
+        for (int i = from; i <= last; i++) {
+            if (fold(text.charAt(i)) != first) continue;
+
+            int j = 1;
+            while (j < foldedTerm.length && fold(text.charAt(i + j)) == foldedTerm[j]) j++;
+            if (j == foldedTerm.length) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * finds the first case-insensitive match of the search term in a part of a character buffer
+     * @param text the buffer to search in
+     * @param from the index to start searching from
+     * @param end the end (exclusive) of the text to search in
+     * @return the start index of the match, or -1 if there is none
+     */
+    private int indexIn(char[] text, int from, int end) {
+        char first = foldedTerm[0];
+        int last = end - foldedTerm.length;
+        for (int i = from; i <= last; i++) {
+            if (fold(text[i]) != first) continue;
+
+            int j = 1;
+            while (j < foldedTerm.length && fold(text[i + j]) == foldedTerm[j]) j++;
+            if (j == foldedTerm.length) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * folds a character for case-insensitive matching, the same way as String.equalsIgnoreCase does
+     * @param c the character
+     * @return the case-folded character
+     */
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,84 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * inverted index from every case-folded (see SearchTerm) 3-character substring (trigram) of the note titles and
+ * contents to the IDs of the notes containing it. A note can only contain a search term if it contains all trigrams of
+ * that search term, so the index gives the candidate notes of a search without looking at every note.
+ * <p>
+ * The index is shared by the NoteIndex snapshots and can be searched while notes are added. Notes are never removed:
+ * the trigrams of an updated or deleted note stay in the index, which only adds candidates that do not match. The
+ * NoteIndex builds a new index when there are more of those than notes.
+ */
+public class TrigramIndex {
+
+    private final ConcurrentHashMap<Long, Set<Integer>> postings = new ConcurrentHashMap<>();
+
+    /**
+     * adds the trigrams of a note to the index
+     * @param note instance of Note
+     */
+    public void add(Note note) {
+        for (long trigram : trigrams(note)) {
+            postings.computeIfAbsent(trigram, k -> ConcurrentHashMap.newKeySet()).add(note.getId());
+        }
+    }
+
+    /**
+     * gets the IDs of the notes that contain all trigrams of the searchTerm. These notes still have to be checked for
+     * the actual searchTerm.
+     * @param searchTerm the search term, at least 3 characters long
+     * @return the candidate note IDs, or null if the searchTerm is too short to use the index
+     */
+    public Set<Integer> getCandidates(String searchTerm) {
+        if (searchTerm.length() < 3) {
+            return null;
+        }
+
+        // start from the smallest posting list, so the intersection never gets larger than that list. The lists are
+        // not sorted on their size, since notes can be added to them while comparing.
+        ArrayList<Set<Integer>> termPostings = new ArrayList<>();
+        Set<Integer> smallest = null;
+        for (long trigram : trigrams(searchTerm)) {
+            Set<Integer> noteIDs = postings.get(trigram);
+            if (noteIDs == null) {
+                // no note contains this trigram, so no note contains the searchTerm
+                return new HashSet<>();
+            }
+            termPostings.add(noteIDs);
+            if (smallest == null || noteIDs.size() < smallest.size()) smallest = noteIDs;
+        }
+
+        HashSet<Integer> candidates = new HashSet<>(smallest);
+        for (int i = 0; i < termPostings.size() && !candidates.isEmpty(); i++) {
+            if (termPostings.get(i) != smallest) candidates.retainAll(termPostings.get(i));
+        }
+        return candidates;
+    }
+
+    /**
+     * @param note instance of Note
+     * @return all trigrams of the note title and content
+     */
+    private static HashSet<Long> trigrams(Note note) {
+        HashSet<Long> trigrams = trigrams(note.getTitle());
+        trigrams.addAll(trigrams(note.getContent()));
+        return trigrams;
+    }
+
+    /**
+     * @param text the text to split in trigrams
+     * @return all case-folded trigrams of the text, packed in a long
+     */
+    private static HashSet<Long> trigrams(String text) {
+        HashSet<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) SearchTerm.fold(text.charAt(i)) << 32) | ((long) SearchTerm.fold(text.charAt(i + 1)) << 16) | SearchTerm.fold(text.charAt(i + 2)));
+        }
+        return trigrams;
+    }
+}
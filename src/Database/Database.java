@@ -1,7 +1,10 @@
 package Database;
 
+import App.Draft;
 import App.Note;
+import App.NoteMatch;
 import App.PasswordManager;
+import App.SearchTerm;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
@@ -12,37 +15,245 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
- * handles all database events
+ * handles all database events. Changes are made on one connection, locked by this Database; queries that only read
+ * notes use a second connection with its own lock, so they can run while a change is being written.
  */
 public class Database {
 
     private final Path DB_LOCATION = Paths.get(System.getProperty("user.home"), ".passwordmanager");
     private final String DB_NAME = "data.db";
     private final String URL = "jdbc:sqlite:////" + Paths.get(DB_LOCATION.toString(), DB_NAME);
-    private JSONObject jsonObject;
+    // the SQLite settings of the connections, chosen with -Dpasswordmanager.storage=<rollback|wal|wal_full>
+    private static final StorageProfile STORAGE_PROFILE = StorageProfile.of(System.getProperty("passwordmanager.storage", "wal"));
+    // how long a connection waits for a lock of the other connection before it fails, in milliseconds
+    private static final int BUSY_TIMEOUT = 5000;
+    // prints the progress of migrations that fill a table
+    private static final NoteTransfer.ProgressListener PROGRESS_PRINTER = (notes, notesPerSecond) ->
+            System.out.printf("%d notes (%.0f notes/s)%n", notes, notesPerSecond);
+    // read by createDatabase(), which has to be called before the queries are used
+    private volatile JSONObject jsonObject;
+    private Connection connection;
+    private Connection readConnection;
+    private final Object readLock = new Object();
+    // prepared statements are cached by their query name in create_db.json, so each query is only prepared once
+    private final HashMap<String, PreparedStatement> statements = new HashMap<>();
+    private final HashMap<String, PreparedStatement> readStatements = new HashMap<>();
+    private final StorageProfile storageProfile;
 
+    /**
+     * the SQLite settings that are applied when a connection is opened. All profiles except ROLLBACK use a write-ahead
+     * log, in which reads do not wait for writes, and keep more pages in memory.
+     */
+    public enum StorageProfile {
+        // the SQLite defaults: a rollback journal, synchronous=FULL and the default cache
+        ROLLBACK(null, null, 0, 0, null, 0),
+        // write-ahead log that is synced at checkpoints; a power loss can undo the last commits, but never corrupts
+        WAL("wal", "normal", -16384, 67108864L, "memory", 4096),
+        // write-ahead log that is synced at every commit
+        WAL_FULL("wal", "full", -16384, 67108864L, "memory", 4096);
+
+        private final String journalMode;
+        private final String synchronous;
+        // in pages, or in KiB when negative
+        private final int cacheSize;
+        private final long mmapSize;
+        private final String tempStore;
+        private final int pageSize;
+
+        StorageProfile(String journalMode, String synchronous, int cacheSize, long mmapSize, String tempStore, int pageSize) {
+            this.journalMode = journalMode;
+            this.synchronous = synchronous;
+            this.cacheSize = cacheSize;
+            this.mmapSize = mmapSize;
+            this.tempStore = tempStore;
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * @param name the profile name, case-insensitive
+         * @return the profile, or WAL if there is no profile with this name
+         */
+        public static StorageProfile of(String name) {
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown storage profile '" + name + "', using " + WAL + ".");
+                return WAL;
+            }
+        }
+
+        /**
+         * @param writeConnection whether the pragmas are for the connection that changes the database. The page size
+         *                        and journal mode are stored in the database file, so they are only set by that one.
+         * @return the pragma statements of this profile
+         */
+        private ArrayList<String> getPragmas(boolean writeConnection) {
+            ArrayList<String> pragmas = new ArrayList<>();
+            pragmas.add("pragma busy_timeout = " + BUSY_TIMEOUT);
+            // the page size can only be changed before the first table is created, so it only applies to new databases
+            if (writeConnection && pageSize > 0) pragmas.add("pragma page_size = " + pageSize);
+            if (writeConnection && journalMode != null) pragmas.add("pragma journal_mode = " + journalMode);
+            if (synchronous != null) pragmas.add("pragma synchronous = " + synchronous);
+            if (cacheSize != 0) pragmas.add("pragma cache_size = " + cacheSize);
+            if (mmapSize > 0) pragmas.add("pragma mmap_size = " + mmapSize);
+            if (tempStore != null) pragmas.add("pragma temp_store = " + tempStore);
+            if (!writeConnection) pragmas.add("pragma query_only = true");
+            return pragmas;
+        }
+    }
+
+    /**
+     * Constructor, uses the storage profile chosen with -Dpasswordmanager.storage
+     */
     public Database() {
-        getQueries();
+        this(STORAGE_PROFILE);
+    }
+
+    /**
+     * Constructor
+     * @param storageProfile the SQLite settings of the connections
+     */
+    public Database(StorageProfile storageProfile) {
+        this.storageProfile = storageProfile;
     }
 
     /**
-     * makes a connection to the SQLite database using the relative url to the database file
+     * gets the long-lived connection to the SQLite database, (re)opening it using the relative url to the database
+     * file if it is not open yet
      * @return a connection to the database
      * @throws SQLException database error
      */
-    public Connection makeConnection() throws SQLException {
-        return DriverManager.getConnection(URL);
+    public synchronized Connection makeConnection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = openConnection(true);
+            // statements prepared on a previous connection cannot be reused
+            statements.clear();
+        }
+        return connection;
+    }
+
+    /**
+     * gets the long-lived connection for queries that only read, (re)opening it if it is not open yet. It may only be
+     * used while holding getReadLock().
+     * @return a read-only connection to the database
+     * @throws SQLException database error
+     */
+    Connection makeReadConnection() throws SQLException {
+        synchronized (readLock) {
+            if (readConnection == null || readConnection.isClosed()) {
+                readConnection = openConnection(false);
+                readStatements.clear();
+            }
+            return readConnection;
+        }
+    }
+
+    /**
+     * @return the lock of the read-only connection
+     */
+    Object getReadLock() {
+        return readLock;
+    }
+
+    /**
+     * opens a connection and applies the storage profile to it
+     * @param writeConnection whether the connection is used to change the database
+     * @return the connection
+     * @throws SQLException database error
+     */
+    private Connection openConnection(boolean writeConnection) throws SQLException {
+        Connection newConnection = DriverManager.getConnection(URL);
+        try (Statement statement = newConnection.createStatement()) {
+            for (String pragma : storageProfile.getPragmas(writeConnection)) {
+                statement.execute(pragma);
+            }
+        } catch (SQLException e) {
+            newConnection.close();
+            throw e;
+        }
+        return newConnection;
+    }
+
+    /**
+     * @param queryName the name of the query in create_db.json
+     * @return the query
+     */
+    String getQuery(String queryName) {
+        return (String) jsonObject.get(queryName);
+    }
+
+    /**
+     * gets the prepared statement of a query in create_db.json, preparing it on first use
+     * @param queryName the name of the query in create_db.json
+     * @return the cached prepared statement
+     * @throws SQLException database error
+     */
+    private PreparedStatement getStatement(String queryName) throws SQLException {
+        return getStatement(queryName, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * gets the prepared statement of a query in create_db.json, preparing it on first use
+     * @param queryName the name of the query in create_db.json
+     * @param autoGeneratedKeys whether the generated keys of the query should be returned
+     * @return the cached prepared statement
+     * @throws SQLException database error
+     */
+    private PreparedStatement getStatement(String queryName, int autoGeneratedKeys) throws SQLException {
+        PreparedStatement statement = statements.get(queryName);
+        if (statement == null || statement.isClosed()) {
+            statement = makeConnection().prepareStatement(getQuery(queryName), autoGeneratedKeys);
+            statements.put(queryName, statement);
+        }
+        return statement;
     }
 
     /**
-     * closes the SQLite database connection
-     * @param connection the connection to the database
+     * gets the prepared statement of a read-only query in create_db.json on the read-only connection, preparing it on
+     * first use. May only be used while holding the read lock.
+     * @param queryName the name of the query in create_db.json
+     * @return the cached prepared statement
      * @throws SQLException database error
      */
-    public void closeConnection(Connection connection) throws SQLException {
-        connection.close();
+    private PreparedStatement getReadStatement(String queryName) throws SQLException {
+        PreparedStatement statement = readStatements.get(queryName);
+        if (statement == null || statement.isClosed()) {
+            statement = makeReadConnection().prepareStatement(getQuery(queryName));
+            readStatements.put(queryName, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * closes all cached prepared statements and the SQLite database connections. Should be called when the app exits.
+     */
+    public synchronized void close() {
+        synchronized (readLock) {
+            try {
+                for (PreparedStatement statement : readStatements.values()) {
+                    statement.close();
+                }
+                readStatements.clear();
+                if (readConnection != null) {
+                    readConnection.close();
+                    readConnection = null;
+                }
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+                statements.clear();
+                if (connection != null) {
+                    connection.close();
+                    connection = null;
+                }
+            } catch (SQLException e) {
+                System.out.println("Error when closing the database connection.");
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -66,92 +277,322 @@ public class Database {
     }
 
     /**
-     * creates the SQLite database if it doesn't exist yet
+     * creates the SQLite database if it doesn't exist yet, and brings its tables and indexes up to date with the
+     * migrations in migrations.json
      */
     public void createDatabase() {
+        // the queries are read here instead of in the constructor, so that the GUI can be shown first
+        getQueries();
+
         // check if the database directory exists
         File dir = new File(String.valueOf(DB_LOCATION));
         if (!dir.exists()) dir.mkdir();
 
-        // get the database file path from the url to check if the database exists
-        String dbPath = Paths.get(DB_LOCATION.toString(), DB_NAME).toString();
-        File f = new File(dbPath);
+        // SQLite creates the database file when the first connection is opened. The migrations create the tables and
+        // indexes that are missing, also in databases that were created by an older version of the app.
+        if (!new SchemaMigrator(this).migrate(PROGRESS_PRINTER)) {
+            System.out.println("Error when creating database.");
+        }
+    }
+
+    /**
+     * creates the full-text search index of the note table if it doesn't exist yet. Triggers on the note table keep the
+     * index in sync with the notes. The index is filled in batches, and the triggers are created last, so an index that
+     * was not filled completely is detected by its missing triggers and created again. Notes are not written until the
+     * index is complete, a note written before its triggers exist would be missing from the index.
+     */
+    public void createSearchIndex() {
         try {
-            if (f.createNewFile()) {
-                // the database file did not exist yet; it has been created. Now, create the "note" table.
-                try {
-                    String noteTableQuery = (String) jsonObject.get("note_table");
-                    Connection connection = makeConnection();
-                    PreparedStatement statement = connection.prepareStatement(noteTableQuery);
-                    statement.execute();
-                    closeConnection(connection);
-                } catch (SQLException e) {
-                    System.out.println("Error when creating database.");
-                    e.printStackTrace();
+            synchronized (this) {
+                try (ResultSet results = getStatement("note_fts_complete").executeQuery()) {
+                    if (results.next() && results.getInt(1) > 0) return;
+                }
+                for (String queryName : new String[] {"note_fts_drop", "note_fts_table"}) {
+                    // these statements are only executed once, so they are not cached
+                    try (PreparedStatement statement = makeConnection().prepareStatement(getQuery(queryName))) {
+                        statement.execute();
+                    }
+                }
+
+                // fill the index with the notes that are already in the database
+                System.out.println("Creating the search index");
+                new SchemaMigrator(this).backfill(getQuery("note_fts_backfill"), PROGRESS_PRINTER);
+
+                for (String queryName : new String[] {"note_fts_insert_trigger", "note_fts_delete_trigger", "note_fts_update_trigger"}) {
+                    try (PreparedStatement statement = makeConnection().prepareStatement(getQuery(queryName))) {
+                        statement.execute();
+                    }
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Couldn't create database file '" + dbPath + "'.");
+        } catch (SQLException e) {
+            System.out.println("Error when creating the search index.");
             e.printStackTrace();
         }
     }
 
+    /**
+     * searches the notes that contain the searchTerm (case-insensitive) in their title or content using the full-text
+     * search index. The index only finds the candidates; they are checked with the SearchTerm, so that the matches are
+     * the same as those of the in-memory search (SQLite's lower() only folds ASCII letters). The index folds the case of
+     * all letters too, except a few that fold to an ASCII letter in SearchTerm (like the long s and the Kelvin sign);
+     * notes that only match through those are not found. Terms that are too short for the index are prefiltered with
+     * a LIKE pattern instead (see getLikePattern()). Can be called from a background thread; when that thread is
+     * interrupted the search stops early.
+     * @param searchTerm the search term
+     * @param previewLength the maximum length of the contents of the returned notes, or 0 for the full contents
+     * @return ArrayList containing the matching notes, last edited notes first, or null on a database error
+     */
+    public ArrayList<NoteMatch> searchNotes(SearchTerm searchTerm, int previewLength) {
+        synchronized (readLock) {
+            ArrayList<NoteMatch> matches = new ArrayList<>();
+            try {
+                PreparedStatement statement;
+                if (searchTerm.length() >= 3) {
+                    statement = getReadStatement("search_notes");
+                    // search the term as a quoted phrase so that its characters are not seen as query syntax
+                    statement.setString(1, "\"" + searchTerm.getTerm().replace("\"", "\"\"") + "\"");
+                } else {
+                    // the trigram index can only find terms of at least 3 characters
+                    statement = getReadStatement("search_notes_short");
+                    statement.setString(1, getLikePattern(searchTerm));
+                }
+
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            // a newer search replaced this one, its (incomplete) result will not be shown
+                            return new ArrayList<>();
+                        }
+                        String title = results.getString("title");
+                        String content = results.getString("content");
+                        boolean titleMatch = searchTerm.contains(title);
+                        boolean contentMatch = searchTerm.contains(content);
+                        if (!titleMatch && !contentMatch) continue;
+
+                        PasswordManager.MatchType matchType = PasswordManager.getMatchType(titleMatch, contentMatch);
+                        // only the preview is kept in memory, the full content is retrieved when the note is opened
+                        boolean contentPreview = previewLength > 0 && content.length() > previewLength;
+                        matches.add(new NoteMatch(new Note(
+                                results.getInt("ID"),
+                                title,
+                                contentPreview ? content.substring(0, previewLength) : content,
+                                results.getLong("create_date"),
+                                results.getLong("last_mod_date"),
+                                contentPreview), matchType));
+                    }
+                }
+                return matches;
+            } catch (SQLException e) {
+                System.out.println("Error when searching notes");
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * gets a LIKE pattern that matches at least every text that contains the searchTerm, so that SQLite can skip most
+     * notes before they are checked with the SearchTerm. LIKE only ignores the case of ASCII letters, so the characters
+     * that a non-ASCII character folds to are left out of the pattern: all non-ASCII characters, and the i, s and k
+     * that the dotted and dotless I, the long s and the Kelvin sign fold to.
+     * @param searchTerm the search term
+     * @return the LIKE pattern, with a backslash as escape character
+     */
+    private static String getLikePattern(SearchTerm searchTerm) {
+        StringBuilder pattern = new StringBuilder("%");
+        // whether the pattern ends with a wildcard, and not with an escaped %
+        boolean wildcard = true;
+        for (char c : searchTerm.getFoldedTerm().toCharArray()) {
+            if (c < 128 && c != 'i' && c != 's' && c != 'k') {
+                if (c == '%' || c == '_' || c == '\\') pattern.append('\\');
+                pattern.append(c);
+                wildcard = false;
+            } else if (!wildcard) {
+                pattern.append('%');
+                wildcard = true;
+            }
+        }
+        if (!wildcard) pattern.append('%');
+        return pattern.toString();
+    }
+
     /**
      * fetches all notes currently in the database
      * @return ArrayList containing all note information in Note objects
      */
     public ArrayList<Note> retrieveNotes() {
-        try {
+        synchronized (readLock) {
             ArrayList<Note> notes = new ArrayList<>();
-            Connection connection = makeConnection();
-
-            String query = "SELECT * FROM note";
-            PreparedStatement statement = connection.prepareStatement(query);
-            ResultSet results = statement.executeQuery();
-
-            while (results.next()) {
-                notes.add(new Note(
-                        results.getInt("ID"),
-                        results.getString("title"),
-                        results.getString("content"),
-                        results.getLong("create_date"),
-                        results.getLong("last_mod_date")));
+            try (ResultSet results = getReadStatement("retrieve_notes").executeQuery()) {
+                while (results.next()) {
+                    notes.add(new Note(
+                            results.getInt("ID"),
+                            results.getString("title"),
+                            results.getString("content"),
+                            results.getLong("create_date"),
+                            results.getLong("last_mod_date")));
+                }
+                return notes;
+            } catch (SQLException e) {
+                System.out.println("Error when fetching notes");
+                e.printStackTrace();
+                return null;
             }
+        }
+    }
 
-            closeConnection(connection);
-            return notes;
-        } catch (SQLException e) {
-            System.out.println("Error when fetching notes");
-            e.printStackTrace();
-            return null;
+    /**
+     * fetches all notes currently in the database, but only the first characters of their content. The full content
+     * can be fetched with retrieveNoteContent().
+     * @param previewLength the maximum number of content characters to fetch per note
+     * @return ArrayList containing all note information in Note objects
+     */
+    public ArrayList<Note> retrieveNoteSummaries(int previewLength) {
+        synchronized (readLock) {
+            ArrayList<Note> notes = new ArrayList<>();
+            try {
+                PreparedStatement statement = getReadStatement("retrieve_note_summaries");
+                statement.setInt(1, previewLength);
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        notes.add(new Note(
+                                results.getInt("ID"),
+                                results.getString("title"),
+                                results.getString("content"),
+                                results.getLong("create_date"),
+                                results.getLong("last_mod_date"),
+                                results.getBoolean("content_preview")));
+                    }
+                }
+                return notes;
+            } catch (SQLException e) {
+                System.out.println("Error when fetching notes");
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * fetches one page of notes, ordered on last modification date (last edited notes first). Pages are continued
+     * from the last note of the previous page (keyset pagination), so the database never has to skip over notes.
+     * @param beforeLastModDate the last modification date of the last note of the previous page, or Long.MAX_VALUE
+     *                          for the first page
+     * @param beforeID the ID of the last note of the previous page, or Integer.MAX_VALUE for the first page
+     * @param pageSize the maximum number of notes to fetch
+     * @param previewLength the maximum number of content characters to fetch per note, or 0 to fetch the full content
+     * @return ArrayList containing the notes of the page, or null on a database error
+     */
+    public ArrayList<Note> retrieveNotePage(long beforeLastModDate, int beforeID, int pageSize, int previewLength) {
+        synchronized (readLock) {
+            ArrayList<Note> notes = new ArrayList<>();
+            try {
+                PreparedStatement statement;
+                if (previewLength > 0) {
+                    statement = getReadStatement("retrieve_note_summary_page");
+                    statement.setInt(1, previewLength);
+                    statement.setLong(2, beforeLastModDate);
+                    statement.setInt(3, beforeID);
+                    statement.setInt(4, pageSize);
+                } else {
+                    statement = getReadStatement("retrieve_note_page");
+                    statement.setLong(1, beforeLastModDate);
+                    statement.setInt(2, beforeID);
+                    statement.setInt(3, pageSize);
+                }
+
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        notes.add(new Note(
+                                results.getInt("ID"),
+                                results.getString("title"),
+                                results.getString("content"),
+                                results.getLong("create_date"),
+                                results.getLong("last_mod_date"),
+                                previewLength > 0 && results.getBoolean("content_preview")));
+                    }
+                }
+                return notes;
+            } catch (SQLException e) {
+                System.out.println("Error when fetching notes");
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * fetches a note with its full content
+     * @param noteID the ID of the note in the database
+     * @return the note, or null if the note does not exist or on a database error
+     */
+    public Note retrieveNote(int noteID) {
+        synchronized (readLock) {
+            try {
+                PreparedStatement statement = getReadStatement("retrieve_note");
+                statement.setInt(1, noteID);
+                try (ResultSet results = statement.executeQuery()) {
+                    if (!results.next()) return null;
+                    return new Note(
+                            results.getInt("ID"),
+                            results.getString("title"),
+                            results.getString("content"),
+                            results.getLong("create_date"),
+                            results.getLong("last_mod_date"));
+                }
+            } catch (SQLException e) {
+                System.out.println("Error when fetching note");
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * fetches the full content of a note
+     * @param noteID the ID of the note in the database
+     * @return the note content, or null if the note does not exist or on a database error
+     */
+    public String retrieveNoteContent(int noteID) {
+        synchronized (readLock) {
+            try {
+                PreparedStatement statement = getReadStatement("retrieve_note_content");
+                statement.setInt(1, noteID);
+                try (ResultSet results = statement.executeQuery()) {
+                    return results.next() ? results.getString("content") : null;
+                }
+            } catch (SQLException e) {
+                System.out.println("Error when fetching note content");
+                e.printStackTrace();
+                return null;
+            }
         }
     }
 
     /**
      * inserts a new note into the database
      * @param note instance of Note
-     * @return the insert status
+     * @return the ID the database generated for the new note, or -1 if the note could not be saved
      */
-    public PasswordManager.UpsertStatus insertNewNote(Note note) {
-        PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
+    public synchronized int insertNewNote(Note note) {
+        int noteID = -1;
 
         try {
-            String newNoteQuery = (String) jsonObject.get("new_note");
-            Connection connection = makeConnection();
-            PreparedStatement statement = connection.prepareStatement(newNoteQuery);
+            PreparedStatement statement = getStatement("new_note", Statement.RETURN_GENERATED_KEYS);
             statement.setString(1, note.getTitle());
             statement.setString(2, note.getContent());
             statement.setLong(3, note.getCreateStamp());
             statement.setLong(4, note.getLastModStamp());
             statement.execute();
-            closeConnection(connection);
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (keys.next()) noteID = keys.getInt(1);
+            }
         } catch (SQLException e) {
             System.out.println("Could not save note");
             e.printStackTrace();
-            status = PasswordManager.UpsertStatus.FAILED;
         }
 
-        return status;
+        return noteID;
     }
 
     /**
@@ -159,19 +600,16 @@ public class Database {
      * @param note instance of Note
      * @return the status of the insertion
      */
-    public PasswordManager.UpsertStatus updateNote(Note note) {
+    public synchronized PasswordManager.UpsertStatus updateNote(Note note) {
         PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
 
         try {
-            String updateNoteQuery = (String) jsonObject.get("update_note");
-            Connection connection = makeConnection();
-            PreparedStatement statement = connection.prepareStatement(updateNoteQuery);
+            PreparedStatement statement = getStatement("update_note");
             statement.setString(1, note.getTitle());
             statement.setString(2, note.getContent());
             statement.setLong(3, note.getLastModStamp());
             statement.setInt(4, note.getId());
             statement.execute();
-            closeConnection(connection);
         } catch (SQLException e) {
             System.out.println("Could not edit note");
             e.printStackTrace();
@@ -186,16 +624,13 @@ public class Database {
      * @param noteID the ID of the note in the database
      * @return the status of the deletion
      */
-    public PasswordManager.UpsertStatus deleteNote(int noteID) {
+    public synchronized PasswordManager.UpsertStatus deleteNote(int noteID) {
         PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
 
         try {
-            String updateNoteQuery = (String) jsonObject.get("delete_note");
-            Connection connection = makeConnection();
-            PreparedStatement statement = connection.prepareStatement(updateNoteQuery);
+            PreparedStatement statement = getStatement("delete_note");
             statement.setInt(1, noteID);
             statement.execute();
-            closeConnection(connection);
         } catch (SQLException e) {
             System.out.println("Could not delete note");
             e.printStackTrace();
@@ -204,4 +639,139 @@ public class Database {
 
         return status;
     }
-}
\ No newline at end of file
+
+    /**
+     * fetches all autosaved drafts
+     * @return ArrayList containing all drafts, least recently saved drafts first, or null on a database error
+     */
+    public ArrayList<Draft> retrieveDrafts() {
+        synchronized (readLock) {
+            ArrayList<Draft> drafts = new ArrayList<>();
+            try (ResultSet results = getReadStatement("retrieve_drafts").executeQuery()) {
+                while (results.next()) {
+                    drafts.add(new Draft(
+                            results.getInt("ID"),
+                            results.getInt("note_ID"),
+                            results.getString("title"),
+                            results.getString("content"),
+                            results.getLong("last_mod_date")));
+                }
+                return drafts;
+            } catch (SQLException e) {
+                System.out.println("Error when fetching drafts");
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * inserts a new draft into the database
+     * @param noteID the ID of the edited note, or -1 for a new note
+     * @param title the draft title
+     * @param content the draft content
+     * @param lastModDate the autosave date
+     * @return the ID the database generated for the new draft, or -1 if the draft could not be saved
+     */
+    public synchronized int insertDraft(int noteID, String title, String content, long lastModDate) {
+        int draftID = -1;
+
+        try {
+            PreparedStatement statement = getStatement("new_draft", Statement.RETURN_GENERATED_KEYS);
+            statement.setInt(1, noteID);
+            statement.setString(2, title);
+            statement.setString(3, content);
+            statement.setLong(4, lastModDate);
+            statement.execute();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (keys.next()) draftID = keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            System.out.println("Could not save draft");
+            e.printStackTrace();
+        }
+
+        return draftID;
+    }
+
+    /**
+     * replaces the title and content of a draft
+     * @param draftID the draft ID
+     * @param title the draft title
+     * @param content the draft content
+     * @param lastModDate the autosave date
+     * @return the status of the update
+     */
+    public synchronized PasswordManager.UpsertStatus updateDraft(int draftID, String title, String content, long lastModDate) {
+        PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
+
+        try {
+            PreparedStatement statement = getStatement("update_draft");
+            statement.setString(1, title);
+            statement.setString(2, content);
+            statement.setLong(3, lastModDate);
+            statement.setInt(4, draftID);
+            statement.execute();
+        } catch (SQLException e) {
+            System.out.println("Could not save draft");
+            e.printStackTrace();
+            status = PasswordManager.UpsertStatus.FAILED;
+        }
+
+        return status;
+    }
+
+    /**
+     * replaces the changed part of the draft content, keeping the unchanged start and end of the content in the
+     * database. The lengths are in Unicode code points, which is how SQLite counts text characters.
+     * @param draftID the draft ID
+     * @param title the draft title
+     * @param prefixLength the length of the unchanged start of the content
+     * @param changedContent the content between the unchanged start and end
+     * @param suffixLength the length of the unchanged end of the content
+     * @param lastModDate the autosave date
+     * @return the status of the update
+     */
+    public synchronized PasswordManager.UpsertStatus updateDraftDelta(int draftID, String title, int prefixLength,
+                                                                     String changedContent, int suffixLength, long lastModDate) {
+        PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
+
+        try {
+            PreparedStatement statement = getStatement("update_draft_delta");
+            statement.setString(1, title);
+            statement.setInt(2, prefixLength);
+            statement.setString(3, changedContent);
+            statement.setInt(4, suffixLength);
+            statement.setLong(5, lastModDate);
+            statement.setInt(6, draftID);
+            statement.execute();
+        } catch (SQLException e) {
+            System.out.println("Could not save draft");
+            e.printStackTrace();
+            status = PasswordManager.UpsertStatus.FAILED;
+        }
+
+        return status;
+    }
+
+    /**
+     * deletes a draft from the database
+     * @param draftID the draft ID
+     * @return the status of the deletion
+     */
+    public synchronized PasswordManager.UpsertStatus deleteDraft(int draftID) {
+        PasswordManager.UpsertStatus status = PasswordManager.UpsertStatus.SUCCESS;
+
+        try {
+            PreparedStatement statement = getStatement("delete_draft");
+            statement.setInt(1, draftID);
+            statement.execute();
+        } catch (SQLException e) {
+            System.out.println("Could not delete draft");
+            e.printStackTrace();
+            status = PasswordManager.UpsertStatus.FAILED;
+        }
+
+        return status;
+    }
+}
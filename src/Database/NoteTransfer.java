@@ -0,0 +1,368 @@
+package Database;
+
+import App.Note;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * streams notes between the database and JSON Lines (one JSON object per line) or CSV files. Notes are read and written
+ * one at a time, so neither the file nor the note table is ever held in memory completely. Imports are inserted in
+ * batches, with one transaction per batch.
+ */
+public class NoteTransfer {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] COLUMNS = {"ID", "title", "content", "create_date", "last_mod_date"};
+
+    private final Database db;
+
+    /**
+     * determines the file format, based on the file extension
+     */
+    public enum Format {
+        JSON_LINES,
+        CSV;
+
+        /**
+         * @param file the file to import or export
+         * @return CSV for ".csv" files, otherwise JSON_LINES
+         */
+        public static Format of(Path file) {
+            return file.toString().toLowerCase().endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    /**
+     * receives the progress of an import or export
+     */
+    public interface ProgressListener {
+        /**
+         * @param notes the number of notes transferred so far
+         * @param notesPerSecond the average number of notes transferred per second so far
+         */
+        void progress(long notes, double notesPerSecond);
+    }
+
+    /**
+     * Constructor
+     * @param db instance of Database to import into or export from
+     */
+    public NoteTransfer(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * imports or exports notes from the command line, printing the progress
+     * @param option "--import" or "--export"
+     * @param file the file to import from or export to
+     */
+    public static void run(String option, Path file) {
+        Database db = new Database();
+        db.createDatabase();
+        NoteTransfer transfer = new NoteTransfer(db);
+        ProgressListener printer = (notes, notesPerSecond) ->
+                System.out.printf("%d notes (%.0f notes/s)%n", notes, notesPerSecond);
+        try {
+            switch (option) {
+                case "--import" -> transfer.importNotes(file, printer);
+                case "--export" -> transfer.exportNotes(file, printer);
+                default -> System.out.println("Unknown option '" + option + "', use --import <file> or --export <file>.");
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            System.out.println("Could not transfer notes with file '" + file + "'.");
+            // the batches of an import that were inserted before the error stay in the database
+            if (option.equals("--import")) System.out.println("The notes of the batches before the error were imported.");
+            e.printStackTrace();
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * writes all notes in the database to a file
+     * @param file the file to write to, CSV if it ends with ".csv", otherwise JSON Lines
+     * @param listener receives the progress after every BATCH_SIZE notes and when done
+     * @return the number of exported notes
+     * @throws IOException file error
+     * @throws SQLException database error
+     */
+    @SuppressWarnings("unchecked")
+    public long exportNotes(Path file, ProgressListener listener) throws IOException, SQLException {
+        Format format = Format.of(file);
+        long start = System.nanoTime();
+        long count = 0;
+
+        // the read-only connection is locked during the export, since the results are streamed from it. Changes can
+        // still be written on the other connection.
+        synchronized (db.getReadLock()) {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                 PreparedStatement statement = db.makeReadConnection().prepareStatement(db.getQuery("export_notes"));
+                 ResultSet results = statement.executeQuery()) {
+                if (format == Format.CSV) writeCsvRecord(writer, COLUMNS);
+
+                while (results.next()) {
+                    String[] values = {
+                            String.valueOf(results.getInt("ID")),
+                            results.getString("title"),
+                            results.getString("content"),
+                            String.valueOf(results.getLong("create_date")),
+                            String.valueOf(results.getLong("last_mod_date"))};
+                    if (format == Format.CSV) {
+                        writeCsvRecord(writer, values);
+                    } else {
+                        JSONObject json = new JSONObject();
+                        json.put("ID", results.getInt("ID"));
+                        json.put("title", values[1]);
+                        json.put("content", values[2]);
+                        json.put("create_date", results.getLong("create_date"));
+                        json.put("last_mod_date", results.getLong("last_mod_date"));
+                        writer.write(json.toJSONString());
+                        writer.newLine();
+                    }
+
+                    if (++count % BATCH_SIZE == 0) listener.progress(count, rate(count, start));
+                }
+            }
+        }
+
+        listener.progress(count, rate(count, start));
+        return count;
+    }
+
+    /**
+     * inserts all notes in a file into the database. The notes get new IDs; the IDs in the file are ignored. Records
+     * that are not valid notes are skipped, and printed with their line number.
+     * @param file the file to read from, CSV if it ends with ".csv", otherwise JSON Lines
+     * @param listener receives the progress after every BATCH_SIZE notes and when done
+     * @return the number of imported notes
+     * @throws IOException file error
+     * @throws SQLException database error, the notes of the failed batch are not inserted
+     */
+    public long importNotes(Path file, ProgressListener listener) throws IOException, SQLException {
+        Format format = Format.of(file);
+        JSONParser jsonParser = new JSONParser();
+        long start = System.nanoTime();
+        long count = 0;
+        long skipped = 0;
+        ArrayList<Note> batch = new ArrayList<>(BATCH_SIZE);
+
+        // counts the lines, so that skipped records can be found in the file
+        try (LineNumberReader reader = new LineNumberReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            // skip the CSV header
+            if (format == Format.CSV) readCsvRecord(reader);
+
+            while (true) {
+                // the line the record starts on
+                int lineNumber = reader.getLineNumber() + 1;
+                Note note;
+                try {
+                    if (format == Format.CSV) {
+                        ArrayList<String> values = readCsvRecord(reader);
+                        if (values == null) break;
+                        if (values.size() == 1 && values.get(0).isBlank()) continue;
+                        note = parseCsvNote(values);
+                    } else {
+                        String line = reader.readLine();
+                        if (line == null) break;
+                        if (line.isBlank()) continue;
+                        note = parseJsonNote(jsonParser.parse(line));
+                    }
+                } catch (ParseException | IllegalArgumentException e) {
+                    System.out.println("Skipped line " + lineNumber + " of '" + file + "': " + e.getMessage());
+                    skipped++;
+                    continue;
+                }
+
+                batch.add(note);
+                if (batch.size() == BATCH_SIZE) {
+                    insertBatch(batch);
+                    count += batch.size();
+                    batch.clear();
+                    listener.progress(count, rate(count, start));
+                }
+            }
+        }
+
+        insertBatch(batch);
+        count += batch.size();
+        listener.progress(count, rate(count, start));
+        if (skipped > 0) System.out.println("Skipped " + skipped + " records that are not valid notes.");
+        return count;
+    }
+
+    /**
+     * @param values the values of a CSV record, in the order of COLUMNS
+     * @return the note, with ID -1
+     * @throws IllegalArgumentException the record is not a valid note
+     */
+    private static Note parseCsvNote(ArrayList<String> values) {
+        if (values.size() != COLUMNS.length) {
+            throw new IllegalArgumentException("expected " + COLUMNS.length + " values, found " + values.size());
+        }
+        return new Note(-1, values.get(1), values.get(2), parseDate(values.get(3), COLUMNS[3]), parseDate(values.get(4), COLUMNS[4]));
+    }
+
+    /**
+     * @param value a date value
+     * @param column the column of the value
+     * @return the date in milliseconds since January 1, 1970, 00:00:00 GMT
+     * @throws IllegalArgumentException the value is not a number
+     */
+    private static long parseDate(String value, String column) {
+        try {
+            return Long.parseLong(value.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " '" + value + "' is not a number");
+        }
+    }
+
+    /**
+     * @param value the parsed JSON line
+     * @return the note, with ID -1
+     * @throws IllegalArgumentException the line is not a valid note
+     */
+    private static Note parseJsonNote(Object value) {
+        if (!(value instanceof JSONObject json)) {
+            throw new IllegalArgumentException("not a JSON object");
+        }
+        return new Note(-1, getJsonString(json, COLUMNS[1]), getJsonString(json, COLUMNS[2]),
+                getJsonDate(json, COLUMNS[3]), getJsonDate(json, COLUMNS[4]));
+    }
+
+    /**
+     * @param json a JSON note
+     * @param key the key of the value
+     * @return the text value
+     * @throws IllegalArgumentException the value is missing or not a text
+     */
+    private static String getJsonString(JSONObject json, String key) {
+        if (!(json.get(key) instanceof String value)) {
+            throw new IllegalArgumentException("'" + key + "' is missing or not a text");
+        }
+        return value;
+    }
+
+    /**
+     * @param json a JSON note
+     * @param key the key of the date
+     * @return the date in milliseconds since January 1, 1970, 00:00:00 GMT
+     * @throws IllegalArgumentException the date is missing or not a whole number
+     */
+    private static long getJsonDate(JSONObject json, String key) {
+        // json-simple parses whole numbers as Long, and numbers with a fraction as Double
+        if (!(json.get(key) instanceof Long value)) {
+            throw new IllegalArgumentException("'" + key + "' is missing or not a whole number");
+        }
+        return value;
+    }
+
+    /**
+     * inserts a batch of notes in a single transaction
+     * @param notes the notes to insert
+     * @throws SQLException database error, none of the notes are inserted
+     */
+    private void insertBatch(ArrayList<Note> notes) throws SQLException {
+        if (notes.isEmpty()) return;
+
+        synchronized (db) {
+            Connection connection = db.makeConnection();
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(db.getQuery("new_note"))) {
+                for (Note note : notes) {
+                    statement.setString(1, note.getTitle());
+                    statement.setString(2, note.getContent());
+                    statement.setLong(3, note.getCreateStamp());
+                    statement.setLong(4, note.getLastModStamp());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * writes a CSV record, quoting every value
+     * @param writer the file writer
+     * @param values the values of the record
+     * @throws IOException file error
+     */
+    private static void writeCsvRecord(BufferedWriter writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) writer.write(',');
+            writer.write('"');
+            writer.write(values[i].replace("\"", "\"\""));
+            writer.write('"');
+        }
+        writer.newLine();
+    }
+
+    /**
+     * reads a CSV record; quoted values may contain commas, newlines and escaped ("") quotes
+     * @param reader the file reader
+     * @return the values of the record, or null at the end of the file
+     * @throws IOException file error
+     */
+    private static ArrayList<String> readCsvRecord(BufferedReader reader) throws IOException {
+        ArrayList<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        int c = reader.read();
+        if (c == -1) return null;
+
+        while (c != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        value.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * @param count the number of notes transferred
+     * @param start the start time in nanoseconds
+     * @return the number of notes transferred per second
+     */
+    private static double rate(long count, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+}
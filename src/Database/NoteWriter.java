@@ -0,0 +1,377 @@
+package Database;
+
+import App.Draft;
+import App.Note;
+import App.PasswordManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * writes note insertions, updates and deletions to the database on a single background thread, so that the GUI does
+ * not wait for the disk. The writer thread takes all queued writes at once and executes them in one transaction. An
+ * update of a note that is still queued replaces the queued update, so only the last version is written. The same goes
+ * for the autosaves of a Draft, which only write the changed part of the content when most of it is unchanged.
+ * <p>
+ * close() writes all queued writes before it returns, and is also called when the JVM shuts down.
+ */
+public class NoteWriter {
+
+    private enum Kind {
+        INSERT,
+        UPDATE,
+        DELETE,
+        SAVE_DRAFT,
+        DELETE_DRAFT
+    }
+
+    /**
+     * a queued write
+     */
+    private static class Write {
+        private final Kind kind;
+        // the note to insert or update, replaced when a newer update of the same note is queued
+        private Note note;
+        private final int noteID;
+        private final Draft draft;
+        // the draft ID before the write, restored when the transaction is rolled back
+        private int previousDraftID;
+        private boolean draftWritten = false;
+        // completed with the note or draft ID, the generated ID for an insert, or -1 if the write failed
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        private Write(Kind kind, Note note, int noteID) {
+            this(kind, note, noteID, null);
+        }
+
+        private Write(Kind kind, Note note, int noteID, Draft draft) {
+            this.kind = kind;
+            this.note = note;
+            this.noteID = noteID;
+            this.draft = draft;
+        }
+    }
+
+    private final Database db;
+    private final Thread writerThread;
+    private ArrayList<Write> queue = new ArrayList<>();
+    // the queued updates by note ID, so that a newer update can replace them
+    private final HashMap<Integer, Write> queuedUpdates = new HashMap<>();
+    // the queued draft saves, so that a newer save of the same draft can replace them
+    private final HashMap<Draft, Write> queuedDraftSaves = new HashMap<>();
+    private boolean closed = false;
+
+    /**
+     * Constructor, starts the writer thread
+     * @param db instance of Database to write to
+     */
+    public NoteWriter(Database db) {
+        this.db = db;
+        writerThread = new Thread(this::writeQueue, "NoteWriter");
+        // the writer thread does not keep the app running, the shutdown hook writes the queued writes
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+    }
+
+    /**
+     * queues the insertion of a new note
+     * @param note instance of Note, its ID is ignored
+     * @return the generated note ID when the note is inserted, or -1 if the insertion failed
+     */
+    public CompletableFuture<Integer> insert(Note note) {
+        return enqueue(new Write(Kind.INSERT, note, note.getId())).result;
+    }
+
+    /**
+     * queues the update of the title, content and last modification date of a note. If an update of the same note is
+     * still queued, it is replaced by this one and both return the same status.
+     * @param note instance of Note
+     * @return the status of the update
+     */
+    public CompletableFuture<PasswordManager.UpsertStatus> update(Note note) {
+        Write write;
+        synchronized (this) {
+            write = queuedUpdates.get(note.getId());
+            if (write != null) {
+                write.note = note;
+            } else {
+                write = enqueue(new Write(Kind.UPDATE, note, note.getId()));
+                if (!closed) queuedUpdates.put(note.getId(), write);
+            }
+        }
+        return toStatus(write);
+    }
+
+    /**
+     * queues the deletion of a note
+     * @param noteID the note ID
+     * @return the status of the deletion
+     */
+    public CompletableFuture<PasswordManager.UpsertStatus> delete(int noteID) {
+        Write write;
+        synchronized (this) {
+            // a later update may not be combined with an update before the deletion
+            queuedUpdates.remove(noteID);
+            write = enqueue(new Write(Kind.DELETE, null, noteID));
+        }
+        return toStatus(write);
+    }
+
+    /**
+     * queues the autosave of a draft. If a save of the same draft is still queued, it is replaced by this one and both
+     * return the same status.
+     * @param draft the draft to save
+     * @param title the draft title
+     * @param content the draft content
+     * @param lastModDate the autosave date
+     * @return the status of the save
+     */
+    public CompletableFuture<PasswordManager.UpsertStatus> saveDraft(Draft draft, String title, String content, long lastModDate) {
+        // the draft title and content are kept in a Note, the note ID is not used
+        Note note = new Note(draft.getNoteID(), title, content, lastModDate, lastModDate);
+        Write write;
+        synchronized (this) {
+            write = queuedDraftSaves.get(draft);
+            if (write != null) {
+                write.note = note;
+            } else {
+                write = enqueue(new Write(Kind.SAVE_DRAFT, note, draft.getNoteID(), draft));
+                if (!closed) queuedDraftSaves.put(draft, write);
+            }
+        }
+        return toStatus(write);
+    }
+
+    /**
+     * queues the deletion of a draft, after its queued saves
+     * @param draft the draft to delete
+     * @return the status of the deletion
+     */
+    public CompletableFuture<PasswordManager.UpsertStatus> deleteDraft(Draft draft) {
+        Write write;
+        synchronized (this) {
+            queuedDraftSaves.remove(draft);
+            write = enqueue(new Write(Kind.DELETE_DRAFT, null, draft.getNoteID(), draft));
+        }
+        return toStatus(write);
+    }
+
+    /**
+     * writes all queued writes and stops the writer thread. Writes that are queued afterwards fail.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            System.out.println("Interrupted while writing the queued notes.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param write the write to queue
+     * @return the write, which has already failed if the writer is closed
+     */
+    private synchronized Write enqueue(Write write) {
+        if (closed) {
+            write.result.complete(-1);
+        } else {
+            queue.add(write);
+            notifyAll();
+        }
+        return write;
+    }
+
+    /**
+     * @param write the update or deletion
+     * @return the status of the write
+     */
+    private static CompletableFuture<PasswordManager.UpsertStatus> toStatus(Write write) {
+        return write.result.thenApply(noteID -> noteID >= 0 ? PasswordManager.UpsertStatus.SUCCESS : PasswordManager.UpsertStatus.FAILED);
+    }
+
+    /**
+     * runs on the writer thread; waits for writes and writes everything that is queued in one transaction, until the
+     * writer is closed and the queue is empty
+     */
+    private void writeQueue() {
+        while (true) {
+            ArrayList<Write> writes;
+            synchronized (this) {
+                while (queue.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // keep writing until the writer is closed, otherwise queued notes would be lost
+                    }
+                }
+                if (queue.isEmpty()) return;
+
+                writes = queue;
+                queue = new ArrayList<>();
+                queuedUpdates.clear();
+                queuedDraftSaves.clear();
+            }
+            write(writes);
+        }
+    }
+
+    /**
+     * executes writes in a single transaction, and completes their results after the transaction
+     * @param writes the writes in the order they were queued
+     */
+    private void write(ArrayList<Write> writes) {
+        int[] results = new int[writes.size()];
+        boolean committed = false;
+
+        synchronized (db) {
+            try {
+                Connection connection = db.makeConnection();
+                connection.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < writes.size(); i++) {
+                        Write write = writes.get(i);
+                        // a failing write is reported by its own result, the other writes are still committed
+                        results[i] = switch (write.kind) {
+                            case INSERT -> db.insertNewNote(write.note);
+                            case UPDATE -> db.updateNote(write.note) == PasswordManager.UpsertStatus.SUCCESS ? write.noteID : -1;
+                            case DELETE -> db.deleteNote(write.noteID) == PasswordManager.UpsertStatus.SUCCESS ? write.noteID : -1;
+                            case SAVE_DRAFT -> writeDraft(write);
+                            case DELETE_DRAFT -> deleteDraft(write);
+                        };
+                    }
+                    connection.commit();
+                    committed = true;
+                } catch (SQLException e) {
+                    System.out.println("Could not write " + writes.size() + " notes");
+                    e.printStackTrace();
+                    connection.rollback();
+                    restoreDrafts(writes);
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.out.println("Could not write " + writes.size() + " notes");
+                e.printStackTrace();
+                restoreDrafts(writes);
+            }
+        }
+
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).result.complete(committed ? results[i] : -1);
+        }
+    }
+
+    /**
+     * saves a draft. When less than half of the content changed since the last save, only the changed part is sent to
+     * the database, which keeps the unchanged start and end of the content.
+     * @param write the draft save
+     * @return the draft ID, or -1 if the draft could not be saved
+     */
+    private int writeDraft(Write write) {
+        Draft draft = write.draft;
+        String title = write.note.getTitle();
+        String content = write.note.getContent();
+        long date = write.note.getLastModStamp();
+        write.previousDraftID = draft.getId();
+        write.draftWritten = true;
+
+        if (draft.getId() < 0) {
+            int draftID = db.insertDraft(draft.getNoteID(), title, content, date);
+            draft.setSaved(draftID, title, draftID >= 0 ? content : null, date);
+            return draftID;
+        }
+
+        String savedContent = draft.getContent();
+        PasswordManager.UpsertStatus status;
+        if (savedContent == null) {
+            status = db.updateDraft(draft.getId(), title, content, date);
+        } else {
+            int prefix = commonPrefixLength(savedContent, content);
+            int suffix = commonSuffixLength(savedContent, content, prefix);
+            String changedContent = content.substring(prefix, content.length() - suffix);
+            if (changedContent.length() * 2 < content.length()) {
+                // SQLite counts the characters of text in code points, not in Java chars
+                status = db.updateDraftDelta(draft.getId(), title, savedContent.codePointCount(0, prefix), changedContent,
+                        savedContent.codePointCount(savedContent.length() - suffix, savedContent.length()), date);
+            } else {
+                status = db.updateDraft(draft.getId(), title, content, date);
+            }
+        }
+
+        // when the save failed, the next save writes the whole content again
+        boolean saved = status == PasswordManager.UpsertStatus.SUCCESS;
+        draft.setSaved(draft.getId(), title, saved ? content : null, date);
+        return saved ? draft.getId() : -1;
+    }
+
+    /**
+     * deletes a draft, if it was saved
+     * @param write the draft deletion
+     * @return the draft ID, or -1 if the draft could not be deleted
+     */
+    private int deleteDraft(Write write) {
+        Draft draft = write.draft;
+        write.previousDraftID = draft.getId();
+        write.draftWritten = true;
+        if (draft.getId() < 0) {
+            return write.noteID;
+        }
+
+        if (db.deleteDraft(draft.getId()) != PasswordManager.UpsertStatus.SUCCESS) {
+            return -1;
+        }
+        draft.setSaved(-1, null, null, draft.getLastModStamp());
+        return write.noteID;
+    }
+
+    /**
+     * restores the draft IDs after the transaction was rolled back. The saved content is not known anymore, so the next
+     * save writes the whole content.
+     * @param writes the writes of the transaction
+     */
+    private static void restoreDrafts(ArrayList<Write> writes) {
+        // in reverse order, so that every draft gets the ID from before its first write
+        for (int i = writes.size() - 1; i >= 0; i--) {
+            Write write = writes.get(i);
+            if (write.draftWritten) {
+                write.draft.setSaved(write.previousDraftID, null, null, write.draft.getLastModStamp());
+            }
+        }
+    }
+
+    /**
+     * @param a the first text
+     * @param b the second text
+     * @return the length of the start that both texts have in common, without splitting a surrogate pair
+     */
+    private static int commonPrefixLength(String a, String b) {
+        int maxLength = Math.min(a.length(), b.length());
+        int length = 0;
+        while (length < maxLength && a.charAt(length) == b.charAt(length)) length++;
+        if (length > 0 && Character.isHighSurrogate(a.charAt(length - 1))) length--;
+        return length;
+    }
+
+    /**
+     * @param a the first text
+     * @param b the second text
+     * @param prefixLength the length of the common start, which may not overlap with the common end
+     * @return the length of the end that both texts have in common, without splitting a surrogate pair
+     */
+    private static int commonSuffixLength(String a, String b, int prefixLength) {
+        int maxLength = Math.min(a.length(), b.length()) - prefixLength;
+        int length = 0;
+        while (length < maxLength && a.charAt(a.length() - 1 - length) == b.charAt(b.length() - 1 - length)) length++;
+        if (length > 0 && Character.isLowSurrogate(a.charAt(a.length() - length))) length--;
+        return length;
+    }
+}
@@ -0,0 +1,180 @@
+package Database;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * brings the database schema up to date with the migrations in migrations.json. SQLite stores the version of the
+ * schema in "pragma user_version"; every migration with a higher version is applied in order, in one transaction
+ * together with its new version, so a migration is either applied completely or not at all. The statements of the
+ * migrations for version 1 to 3 may already have been applied by older versions of the app (with version 0), so they
+ * are written to do nothing in that case.
+ * <p>
+ * A migration can also backfill a table from the note table. The backfill query is executed for batches of BATCH_SIZE
+ * note IDs, with the range of IDs as ?1 (exclusive) and ?2 (inclusive), each batch in its own transaction, so a large
+ * note table does not end up in one long transaction. No other writes are made until the backfill is done, so that no
+ * note changes in a range that is already backfilled. An interrupted backfill is started over, so the backfill query
+ * has to replace the rows that it already wrote.
+ */
+public class SchemaMigrator {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String MIGRATION_FILE = "/Database/migrations.json";
+
+    private final Database db;
+
+    /**
+     * Constructor
+     * @param db instance of Database to migrate
+     */
+    public SchemaMigrator(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * applies the migrations that are newer than the schema version of the database
+     * @param listener receives the progress of backfills
+     * @return true if the schema is up to date, false if a migration failed
+     */
+    public boolean migrate(NoteTransfer.ProgressListener listener) {
+        JSONArray migrations = readMigrations();
+        if (migrations == null) {
+            return false;
+        }
+
+        try {
+            int version = getVersion();
+            for (Object object : migrations) {
+                JSONObject migration = (JSONObject) object;
+                int migrationVersion = ((Number) migration.get("version")).intValue();
+                if (migrationVersion <= version) continue;
+
+                System.out.println("Migrating the database to version " + migrationVersion + ": " + migration.get("description"));
+                String backfill = (String) migration.get("backfill");
+                // without a backfill, the statements and the new version are committed together
+                execute((JSONArray) migration.get("statements"), backfill == null ? migrationVersion : -1);
+                if (backfill != null) {
+                    backfill(backfill, listener);
+                    execute(new JSONArray(), migrationVersion);
+                }
+                version = migrationVersion;
+            }
+            return true;
+        } catch (SQLException e) {
+            System.out.println("Error when migrating the database.");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * executes a query for all notes, in batches of BATCH_SIZE note IDs with one transaction per batch
+     * @param query the query, with the range of note IDs of the batch as ?1 (exclusive) and ?2 (inclusive)
+     * @param listener receives the progress after every batch
+     * @return the number of rows that the query changed
+     * @throws SQLException database error, the batches before the failed batch are committed
+     */
+    public long backfill(String query, NoteTransfer.ProgressListener listener) throws SQLException {
+        // the write lock is held for the whole backfill: a note that is written during the backfill, in a range of IDs
+        // that is already done, would be missing from the backfilled table. Reads go on on the read connection.
+        synchronized (db) {
+            long minID;
+            long maxID;
+            try (Statement statement = db.makeConnection().createStatement();
+                 ResultSet results = statement.executeQuery("select min(ID), max(ID) from note")) {
+                results.next();
+                minID = results.getLong(1);
+                maxID = results.getLong(2);
+                // an empty note table has no IDs to backfill
+                if (results.wasNull()) return 0;
+            }
+
+            long start = System.nanoTime();
+            long count = 0;
+            Connection connection = db.makeConnection();
+            for (long fromID = minID - 1; fromID < maxID; fromID += BATCH_SIZE) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement statement = connection.prepareStatement(query)) {
+                    statement.setLong(1, fromID);
+                    statement.setLong(2, Math.min(fromID + BATCH_SIZE, maxID));
+                    count += statement.executeUpdate();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                listener.progress(count, seconds > 0 ? count / seconds : 0);
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the schema version of the database, 0 for new databases and databases of older versions of the app
+     * @throws SQLException database error
+     */
+    private int getVersion() throws SQLException {
+        synchronized (db) {
+            try (Statement statement = db.makeConnection().createStatement();
+                 ResultSet results = statement.executeQuery("pragma user_version")) {
+                return results.next() ? results.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * executes statements in one transaction
+     * @param statements the statements to execute
+     * @param version the new schema version to set in the same transaction, or -1 to keep the version
+     * @throws SQLException database error, none of the statements are applied
+     */
+    private void execute(JSONArray statements, int version) throws SQLException {
+        synchronized (db) {
+            Connection connection = db.makeConnection();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (Object query : statements) {
+                    statement.execute((String) query);
+                }
+                if (version >= 0) statement.execute("pragma user_version = " + version);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * @return the migrations in migrations.json, ordered on version, or null if the file could not be read
+     */
+    private JSONArray readMigrations() {
+        // an InputStreamReader is used so that the file can also be read when run from a jar file
+        try (InputStreamReader reader = new InputStreamReader(getClass().getResourceAsStream(MIGRATION_FILE), StandardCharsets.UTF_8)) {
+            return (JSONArray) new JSONParser().parse(reader);
+        } catch (ParseException e) {
+            System.out.println("Error when parsing '" + MIGRATION_FILE + "'.");
+            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Could not find migration file '" + MIGRATION_FILE + "'.");
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
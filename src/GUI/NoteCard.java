@@ -0,0 +1,253 @@
+package GUI;
+
+import App.Note;
+import App.NoteMatch;
+import App.PasswordManager;
+import App.SearchTerm;
+
+import javax.swing.*;
+import javax.swing.text.PlainDocument;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+
+/**
+ * Lightweight note card that only holds the note it shows. The title, last modification date and the start of the
+ * content are painted by a renderer that is shared by all cards, so a card has no text area, labels or document of its
+ * own. Clicking the title opens the note for editing; clicking anywhere else replaces the painting by a real note pane
+ * (see PasswordManager.createNotePane()), so that the content can be selected and scrolled.
+ */
+public class NoteCard extends JComponent {
+
+    // the number of content characters that are painted, more than fits in the content area
+    private static final int PREVIEW_LENGTH = 500;
+    // created on first use, cards are only painted on the event dispatch thread
+    private static Renderer renderer;
+
+    private final PasswordManager passwordManager;
+    // the note is created when the card is first painted
+    private NoteMatch match;
+    private final SearchTerm searchTerm;
+    private JPanel notePane;
+    // what the renderer shows of this card, found once when the card is first painted
+    private String preview;
+    private String titleText;
+    // the length of the title text without the "..." of a cut-off title
+    private int visibleLength;
+    // the matches in the title and in the preview, or null if there are none to highlight
+    private int[] titleMatches;
+    private int[] previewMatches;
+    // the bounds of the title and of its highlighted matches, at titleSize
+    private Dimension titleSize;
+    private Rectangle titleBounds;
+    private Rectangle[] titleHighlights;
+
+    /**
+     * the components that paint the cards, laid out like a note pane. The renderer keeps the card it shows, so that it is
+     * only filled and laid out again when another card, or a card with another size, is painted.
+     */
+    private static class Renderer {
+        private final CellRendererPane rendererPane = new CellRendererPane();
+        private final JPanel panel = new JPanel();
+        private final JTextArea contentArea = new JTextArea(13, 18);
+        private final JScrollPane scrollPane = new JScrollPane(contentArea);
+        private final JLabel title = new JLabel();
+        private final JLabel lastModDate = new JLabel();
+        // the card that is shown, and the size it was laid out at
+        private NoteCard card;
+        private Dimension size;
+
+        private Renderer() {
+            panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
+            // the title matches are painted before the panel
+            panel.setOpaque(false);
+            contentArea.setLineWrap(true);
+            scrollPane.setAlignmentX(Component.CENTER_ALIGNMENT);
+            title.setAlignmentX(Component.CENTER_ALIGNMENT);
+            title.setHorizontalAlignment(SwingConstants.CENTER);
+            lastModDate.setAlignmentX(Component.CENTER_ALIGNMENT);
+            panel.add(scrollPane);
+            panel.add(title);
+            panel.add(lastModDate);
+        }
+
+        /**
+         * shows a card, with the start of its content, and lays out the renderer at the size of the card. The title
+         * bounds and the title matches of the card are kept for that size.
+         * @param card the card to show
+         */
+        private void setCard(NoteCard card) {
+            Dimension cardSize = card.getSize();
+            if (card == this.card && cardSize.equals(size)) return;
+
+            if (card != this.card) {
+                // a new document for every card, the highlights of the previous cards leave positions behind in a
+                // document that make every later change slower
+                contentArea.getHighlighter().removeAllHighlights();
+                contentArea.setDocument(new PlainDocument());
+                contentArea.setText(card.preview);
+                contentArea.setCaretPosition(0);
+                if (card.previewMatches != null) {
+                    card.match.getNote().highlightContent(contentArea, card.previewMatches, card.searchTerm.length());
+                }
+                title.setText(card.titleText);
+                lastModDate.setText(card.match.getNote().getLastModDate());
+            }
+            this.card = card;
+            size = cardSize;
+            panel.setBounds(0, 0, cardSize.width, cardSize.height);
+            layout(panel);
+
+            if (!cardSize.equals(card.titleSize)) {
+                card.titleSize = cardSize;
+                card.titleBounds = title.getBounds();
+                card.titleHighlights = getTitleHighlights(card);
+            }
+        }
+
+        /**
+         * gets the backgrounds of the matches in the shown title, in the same way as Note.highlightTitle()
+         * @param card the shown card
+         * @return the bounds of the backgrounds in the card, or null if the title has no matches
+         */
+        private Rectangle[] getTitleHighlights(NoteCard card) {
+            if (card.titleMatches == null) return null;
+
+            String text = title.getText();
+            FontMetrics metrics = title.getFontMetrics(title.getFont());
+            Insets insets = title.getInsets();
+            Rectangle viewBounds = new Rectangle(insets.left, insets.top, title.getWidth() - insets.left - insets.right,
+                    title.getHeight() - insets.top - insets.bottom);
+            Rectangle textBounds = new Rectangle();
+            SwingUtilities.layoutCompoundLabel(title, metrics, text, null, title.getVerticalAlignment(),
+                    title.getHorizontalAlignment(), title.getVerticalTextPosition(), title.getHorizontalTextPosition(),
+                    viewBounds, new Rectangle(), textBounds, title.getIconTextGap());
+
+            int matchLength = card.searchTerm.length();
+            ArrayList<Rectangle> highlights = new ArrayList<>();
+            for (int index : card.titleMatches) {
+                // only the matches before the "..." of a cut-off title are highlighted
+                if (index + matchLength > card.visibleLength) break;
+                int x = textBounds.x + metrics.stringWidth(text.substring(0, index));
+                int width = metrics.stringWidth(text.substring(index, index + matchLength));
+                highlights.add(new Rectangle(title.getX() + x, title.getY() + textBounds.y, width, textBounds.height));
+            }
+            return highlights.toArray(new Rectangle[0]);
+        }
+
+        /**
+         * lays out a component and its children; the renderer is not displayable, so validate() does not lay it out
+         * @param component the component to lay out
+         */
+        private static void layout(Component component) {
+            if (component instanceof Container container) {
+                container.doLayout();
+                for (Component child : container.getComponents()) {
+                    layout(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     * @param passwordManager instance of PasswordManager that opens the note and creates the note pane
+     * @param match the note, and whether highlighting should be done in note title or content, or both or none
+     * @param searchTerm the search term
+     */
+    public NoteCard(PasswordManager passwordManager, NoteMatch match, SearchTerm searchTerm) {
+        super();
+        this.passwordManager = passwordManager;
+        this.match = match;
+        this.searchTerm = searchTerm;
+        setLayout(new BorderLayout());
+
+        MouseAdapter mouseAdapter = new MouseAdapter() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                setCursor(Cursor.getPredefinedCursor(isOnTitle(e.getPoint()) ? Cursor.HAND_CURSOR : Cursor.DEFAULT_CURSOR));
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (!isOnTitle(e.getPoint())) {
+                    showNotePane(e);
+                }
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (notePane == null && isOnTitle(e.getPoint())) {
+                    passwordManager.openNote(match.getNote());
+                }
+            }
+        };
+        addMouseListener(mouseAdapter);
+        addMouseMotionListener(mouseAdapter);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (notePane != null) return;
+
+        Renderer renderer = getRenderer();
+        renderer.setCard(this);
+        if (titleHighlights != null) {
+            g.setColor(Note.getTitleHighlightColor());
+            for (Rectangle highlight : titleHighlights) {
+                g.fillRect(highlight.x, highlight.y, highlight.width, highlight.height);
+            }
+        }
+        renderer.rendererPane.paintComponent(g, renderer.panel, this, 0, 0, getWidth(), getHeight(), false);
+    }
+
+    /**
+     * @return the renderer, which shows the texts and matches of this card
+     */
+    private Renderer getRenderer() {
+        if (renderer == null) renderer = new Renderer();
+        if (preview == null) {
+            match = match.withNote();
+            Note note = match.getNote();
+            String content = note.getContent();
+            preview = content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+            // HTML titles (see Note.highlightTitle()) would be parsed again for every card that is painted
+            titleText = passwordManager.getTitleText(note);
+            visibleLength = titleText.equals(note.getTitle()) ? titleText.length() : titleText.length() - 3;
+            titleMatches = passwordManager.getTitleMatches(match, searchTerm);
+            previewMatches = passwordManager.getContentMatches(match, searchTerm, preview);
+        }
+        return renderer;
+    }
+
+    /**
+     * @param point point in the card
+     * @return true if the point is on the title of the note
+     */
+    private boolean isOnTitle(Point point) {
+        // the title is only laid out again when the size of the card changed
+        if (!getSize().equals(titleSize)) getRenderer().setCard(this);
+        return titleBounds.contains(point);
+    }
+
+    /**
+     * replaces the painted card by a real note pane, and passes the mouse press on to the component that was pressed
+     * @param e the mouse press on the card
+     */
+    private void showNotePane(MouseEvent e) {
+        if (notePane != null) return;
+
+        notePane = passwordManager.createNotePane(match, searchTerm);
+        add(notePane);
+        // the note pane has to be laid out before the pressed component can be found
+        validate();
+        setCursor(null);
+
+        Component pressed = SwingUtilities.getDeepestComponentAt(this, e.getX(), e.getY());
+        if (pressed != null && pressed != this) {
+            pressed.dispatchEvent(SwingUtilities.convertMouseEvent(this, e, pressed));
+            if (pressed.isFocusable()) pressed.requestFocusInWindow();
+        }
+    }
+}
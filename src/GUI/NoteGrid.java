@@ -0,0 +1,218 @@
+package GUI;
+
+import App.Note;
+import App.NoteMatch;
+import App.PasswordManager;
+import App.SearchTerm;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Virtualized grid of note cards (see NoteCard). Only the notes in the rows that are visible in the scroll pane get a
+ * card; the rows above and below are replaced by empty spacers of the same height, so the scrollbar still represents
+ * all notes. The cards are laid out by a WrapLayout, where every spacer fills an entire row.
+ * <p>
+ * The cards are kept by note ID. When the notes are replaced or the grid is scrolled, a card is reused as long as it
+ * shows the same version of the note with the same highlighting, and the components of the grid are only added, moved
+ * or removed where they differ from the new ones.
+ */
+public class NoteGrid extends JPanel {
+
+    // extra rows above and below the visible rows that get a note pane, so that scrolling does not show empty rows
+    private static final int BUFFER_ROWS = 1;
+
+    private final PasswordManager passwordManager;
+    private final JScrollPane scrollPane;
+    private final JComponent topSpacer = new JPanel();
+    private final JComponent bottomSpacer = new JPanel();
+    private Dimension cellSize;
+    private List<NoteMatch> matches = new ArrayList<>();
+    private SearchTerm searchTerm = new SearchTerm("");
+    // the note panes of the rows that are currently shown, keyed by note ID
+    private HashMap<Integer, NotePane> notePanes = new HashMap<>();
+    private int firstIndex = 0;
+    private int lastIndex = -1;
+    // true when the notes were replaced, so that the panes have to be checked even if the visible rows are the same
+    private boolean notesChanged = true;
+    private Runnable endReachedListener;
+
+    /**
+     * a note pane with the note and search term it shows
+     */
+    private static class NotePane {
+        private final JComponent pane;
+        private final NoteMatch match;
+        private final SearchTerm searchTerm;
+
+        private NotePane(JComponent pane, NoteMatch match, SearchTerm searchTerm) {
+            this.pane = pane;
+            this.match = match;
+            this.searchTerm = searchTerm;
+        }
+
+        /**
+         * @param match the note to show
+         * @param searchTerm the search term to highlight
+         * @return true if this pane shows the same version of the note with the same highlighting
+         */
+        private boolean shows(NoteMatch match, SearchTerm searchTerm) {
+            // every edit changes the last modification date
+            return match.getLastModStamp() == this.match.getLastModStamp()
+                    && match.isContentPreview() == this.match.isContentPreview()
+                    && match.getMatchType() == this.match.getMatchType()
+                    && (match.getMatchType() == PasswordManager.MatchType.NONE
+                        || searchTerm.getFoldedTerm().equals(this.searchTerm.getFoldedTerm()));
+        }
+    }
+
+    /**
+     * Constructor
+     * @param passwordManager instance of PasswordManager that creates the note panes
+     */
+    public NoteGrid(PasswordManager passwordManager) {
+        super(new WrapLayout(FlowLayout.CENTER, 10, 10));
+        this.passwordManager = passwordManager;
+        scrollPane = new JScrollPane(this);
+        // the rows to show change when the user scrolls or when the scroll pane is resized
+        scrollPane.getViewport().addChangeListener(e -> updateVisibleNotes());
+    }
+
+    /**
+     * @return the scroll pane containing the grid
+     */
+    public JScrollPane getScrollPane() {
+        return scrollPane;
+    }
+
+    /**
+     * @param endReachedListener called when the last row of notes is scrolled into view, e.g. to load more notes
+     */
+    public void setEndReachedListener(Runnable endReachedListener) {
+        this.endReachedListener = endReachedListener;
+    }
+
+    /**
+     * replaces the notes in the grid
+     * @param matches the notes to show
+     * @param searchTerm the search term to highlight in the notes
+     */
+    public void setNotes(List<NoteMatch> matches, String searchTerm) {
+        this.matches = matches;
+        this.searchTerm = new SearchTerm(searchTerm);
+        notesChanged = true;
+        updateVisibleNotes();
+    }
+
+    /**
+     * creates the note panes of the visible rows that are not shown yet, and removes the panes of the rows that are no
+     * longer visible
+     */
+    private void updateVisibleNotes() {
+        if (cellSize == null) {
+            // all note panes get the size of an empty note pane, so that every row has the same height. Titles that are
+            // too wide are cut off by their label.
+            cellSize = passwordManager.createNotePane(new NoteMatch(new Note(-1, "", "", 0, 0),
+                    PasswordManager.MatchType.NONE), searchTerm).getPreferredSize();
+        }
+
+        WrapLayout layout = (WrapLayout) getLayout();
+        int hgap = layout.getHgap();
+        int vgap = layout.getVgap();
+        Insets insets = getInsets();
+        int width = scrollPane.getViewport().getExtentSize().width;
+        // the same maximum row width that the WrapLayout uses
+        int maxWidth = Math.max(width - insets.left - insets.right - hgap * 2, cellSize.width);
+        int columns = Math.max(1, (maxWidth + hgap) / (cellSize.width + hgap));
+        int rows = (matches.size() + columns - 1) / columns;
+        int rowHeight = cellSize.height + vgap;
+
+        Rectangle view = scrollPane.getViewport().getViewRect();
+        int firstRow = Math.max(0, (view.y - insets.top - vgap) / rowHeight - BUFFER_ROWS);
+        int lastRow = Math.min(rows - 1, (view.y + view.height - insets.top - vgap) / rowHeight + BUFFER_ROWS);
+        int newFirstIndex = firstRow * columns;
+        int newLastIndex = Math.min(matches.size() - 1, (lastRow + 1) * columns - 1);
+
+        if (lastRow == rows - 1 && endReachedListener != null) {
+            endReachedListener.run();
+        }
+
+        Dimension topSize = new Dimension(maxWidth, Math.max(0, firstRow * rowHeight - vgap));
+        Dimension bottomSize = new Dimension(maxWidth, Math.max(0, (rows - 1 - lastRow) * rowHeight - vgap));
+        if (!notesChanged && newFirstIndex == firstIndex && newLastIndex == lastIndex
+                && topSize.equals(topSpacer.getPreferredSize()) && bottomSize.equals(bottomSpacer.getPreferredSize())) {
+            // nothing changed, prevents relayouts from triggering each other
+            return;
+        }
+
+        // keep the panes that still show the same note, create the other panes
+        HashMap<Integer, NotePane> visiblePanes = new HashMap<>();
+        ArrayList<Component> components = new ArrayList<>();
+        if (firstRow > 0) components.add(topSpacer);
+        for (int i = newFirstIndex; i <= newLastIndex; i++) {
+            NoteMatch match = matches.get(i);
+            int noteID = match.getNoteID();
+            NotePane notePane = notePanes.get(noteID);
+            if (notePane == null || !notePane.shows(match, searchTerm) || visiblePanes.containsKey(noteID)) {
+                notePane = new NotePane(new NoteCard(passwordManager, match, searchTerm), match, searchTerm);
+                notePane.pane.setPreferredSize(cellSize);
+            }
+            visiblePanes.put(noteID, notePane);
+            components.add(notePane.pane);
+        }
+        if (lastRow < rows - 1) components.add(bottomSpacer);
+
+        boolean changed = !topSize.equals(topSpacer.getPreferredSize()) || !bottomSize.equals(bottomSpacer.getPreferredSize());
+        topSpacer.setPreferredSize(topSize);
+        bottomSpacer.setPreferredSize(bottomSize);
+        changed |= setComponents(components);
+
+        notePanes = visiblePanes;
+        firstIndex = newFirstIndex;
+        lastIndex = newLastIndex;
+        notesChanged = false;
+        if (changed) {
+            // the scroll pane is the validate root, so only the grid is laid out again
+            revalidate();
+            repaint();
+        }
+    }
+
+    @Override
+    protected void paintChildren(Graphics g) {
+        super.paintChildren(g);
+        if (!matches.isEmpty()) StartupTrace.mark("first notes visible");
+    }
+
+    /**
+     * changes the components of the grid into the given components. Components that are already in the grid stay in
+     * the grid and are only moved if their position changed.
+     * @param components the components in their order in the grid
+     * @return true if any component was added, moved or removed
+     */
+    private boolean setComponents(ArrayList<Component> components) {
+        boolean changed = false;
+        for (int i = 0; i < components.size(); i++) {
+            Component component = components.get(i);
+            if (i < getComponentCount() && getComponent(i) == component) continue;
+
+            if (component.getParent() == this) {
+                // moving the component within the grid does not remove it from the grid first
+                setComponentZOrder(component, i);
+            } else {
+                add(component, i);
+            }
+            changed = true;
+        }
+
+        // the components that are not used anymore have been moved to the end
+        while (getComponentCount() > components.size()) {
+            remove(getComponentCount() - 1);
+            changed = true;
+        }
+        return changed;
+    }
+}
@@ -1,6 +1,9 @@
 package GUI;
 
+import App.Draft;
+import App.NoteMatch;
 import App.PasswordManager;
+import Database.NoteTransfer;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -9,7 +12,12 @@ import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The main GUI showing all notes in a WrapLayout. New notes can be added and existing notes can be added by button/label
@@ -20,27 +28,129 @@ public class PasswordManagerGUI extends JFrame implements ActionListener {
     private final PasswordManager passwordManager;
     private JTextField searchInput;
     private JButton addNote;
-    private JPanel resultPanel;
+    private NoteGrid resultGrid;
+    // the search only starts when no key has been typed for SEARCH_DELAY milliseconds
+    private static final int SEARCH_DELAY = 150;
+    private Timer searchTimer;
+    private SwingWorker<List<NoteMatch>, Void> searchWorker;
+    private SwingWorker<Boolean, Void> pageWorker;
     private final JLabel appLabel = new JLabel("Password and notes manager");
 
     public static void main(String[] args) {
-        new PasswordManagerGUI();
+        if (args.length == 2) {
+            // "--import <file>" or "--export <file>" transfers the notes without opening the GUI
+            NoteTransfer.run(args[0], Paths.get(args[1]));
+            return;
+        }
+        SwingUtilities.invokeLater(PasswordManagerGUI::new);
     }
 
     /**
-     * Constructor
+     * Constructor, shows the window right away and retrieves the notes in the background
      */
     PasswordManagerGUI() {
         passwordManager = new PasswordManager(this);
         setPreferredSize(new Dimension(470, 500));
         setTitle("PasswordManager");
         createGUI();
-        // retrieve the notes from the database and add them to the resultsPanel
-        addNotesToPanel(passwordManager.getNotes(""));
+        // searching and adding notes have to wait until the database is ready
+        searchInput.setEnabled(false);
+        addNote.setEnabled(false);
+        appLabel.setText("Password and notes manager (loading notes)");
         pack();
         setLocationRelativeTo(null);
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // autosave the notes that are still being edited, so they can be recovered at the next launch
+                for (Window window : Window.getWindows()) {
+                    if (window instanceof UpsertNote upsertNote && upsertNote.isVisible()) upsertNote.autosave();
+                }
+                // write the queued note changes and cleanly close the long-lived database connection before the app exits
+                passwordManager.close();
+            }
+        });
         setVisible(true);
+        loadNotes();
+        // the windows to edit and create notes are built while the user looks at the notes
+        UpsertNotePool.warmUp();
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        StartupTrace.mark("first paint");
+    }
+
+    /**
+     * opens the database and retrieves the notes on a background thread. The last edited notes are shown as soon as
+     * they are retrieved, all notes when they are all retrieved. Afterwards, the drafts can be recovered.
+     */
+    private void loadNotes() {
+        SwingWorker<Void, Boolean> loadWorker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                passwordManager.open(() -> publish(true));
+                return null;
+            }
+
+            @Override
+            protected void process(List<Boolean> chunks) {
+                // the database is ready, the first notes are shown on the Event Dispatch Thread. When all notes are
+                // already retrieved, done() shows them.
+                if (isDone()) return;
+                addNotesToPanel(passwordManager.getNotes(""), "");
+                appLabel.setText("Password and notes manager (loading notes)");
+                searchInput.setEnabled(true);
+                addNote.setEnabled(true);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+                searchInput.setEnabled(true);
+                addNote.setEnabled(true);
+                // the user might have started searching in the first notes
+                if (searchInput.getText().strip().equals("")) {
+                    addNotesToPanel(passwordManager.getNotes(""), "");
+                } else {
+                    search(searchInput.getText());
+                }
+                StartupTrace.mark("all notes loaded");
+                recoverDrafts();
+            }
+        };
+        loadWorker.execute();
+    }
+
+    /**
+     * offers to recover the drafts of notes that were still being edited when the app was closed. A recovered draft is
+     * opened in an UpsertNote window, the other drafts are deleted.
+     */
+    private void recoverDrafts() {
+        ArrayList<Draft> drafts = passwordManager.getDrafts();
+        if (drafts == null) return;
+
+        for (Draft draft : drafts) {
+            String title = draft.getTitle().strip().equals("") ? "without title" : "'" + draft.getTitle() + "'";
+            int reply = JOptionPane.showConfirmDialog(this,
+                    "An unsaved note " + title + " was found. Do you want to recover it?", "Recover note",
+                    JOptionPane.YES_NO_OPTION);
+            if (reply != JOptionPane.YES_OPTION) {
+                passwordManager.discardDraft(draft);
+                continue;
+            }
+
+            UpsertNote upsertNote = UpsertNotePool.open(draft.getNoteID(), passwordManager, this);
+            upsertNote.setNoteTitle(draft.getTitle());
+            upsertNote.setNoteContent(draft.getContent());
+            upsertNote.setDraft(draft);
+        }
     }
 
     /**
@@ -65,16 +175,19 @@ public class PasswordManagerGUI extends JFrame implements ActionListener {
         JLabel inputLabel = new JLabel("Search:");
         searchInput = new JTextField();
         searchInput.setPreferredSize(new Dimension(160, 20));
-        // add a DocumentListener so that search input gets constantly updated while typing
+        // add a DocumentListener so that search input gets constantly updated while typing. Every change restarts the
+        // timer, so fast typing only results in one search
+        searchTimer = new Timer(SEARCH_DELAY, e -> search(searchInput.getText()));
+        searchTimer.setRepeats(false);
         searchInput.getDocument().addDocumentListener(new DocumentListener() {
             public void changedUpdate(DocumentEvent e) {
-                addNotesToPanel(passwordManager.getNotes(searchInput.getText()));
+                searchTimer.restart();
             }
             public void removeUpdate(DocumentEvent e) {
-                addNotesToPanel(passwordManager.getNotes(searchInput.getText()));
+                searchTimer.restart();
             }
             public void insertUpdate(DocumentEvent e) {
-                addNotesToPanel(passwordManager.getNotes(searchInput.getText()));
+                searchTimer.restart();
             }
         });
         addNote = new JButton("Add note");
@@ -88,44 +201,95 @@ public class PasswordManagerGUI extends JFrame implements ActionListener {
         inputPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
         mainContainer.add(inputPanel);
 
-        // results panel with custom WrapLayout extended from FlowLayout
-        resultPanel = new JPanel(new WrapLayout(FlowLayout.CENTER, 10, 10));
-        JScrollPane resultScrollPane = new JScrollPane(resultPanel);
+        // results grid that only creates the note panes that are scrolled into view, laid out with the custom
+        // WrapLayout extended from FlowLayout
+        resultGrid = new NoteGrid(passwordManager);
+        resultGrid.setEndReachedListener(this::loadMoreNotes);
+        JScrollPane resultScrollPane = resultGrid.getScrollPane();
         resultScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         resultScrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
         mainContainer.add(resultScrollPane);
     }
 
     /**
-     * adds note panels to the resultPanel
-     * @param notePanes ArrayList of all note panels
+     * searches the notes on a background thread, so that the GUI does not freeze while searching. A search that is
+     * still running is cancelled, since only the results of the latest search are shown.
+     * @param searchTerm the search term
      */
-    public void addNotesToPanel(ArrayList<JPanel> notePanes) {
-        resultPanel.removeAll();
+    private void search(String searchTerm) {
+        if (searchWorker != null) {
+            searchWorker.cancel(true);
+        }
+
+        String strippedSearchTerm = searchTerm.strip();
+        searchWorker = new SwingWorker<>() {
+            @Override
+            protected List<NoteMatch> doInBackground() {
+                return passwordManager.getNotes(strippedSearchTerm);
+            }
 
-        if (notePanes != null) {
-            for (JPanel notePane : notePanes) {
-                resultPanel.add(notePane);
+            @Override
+            protected void done() {
+                // done() runs on the Event Dispatch Thread; skip the results of cancelled (outdated) searches
+                if (isCancelled() || searchWorker != this) return;
+                try {
+                    addNotesToPanel(get(), strippedSearchTerm);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
             }
-            appLabel.setText("Password and notes manager (" + notePanes.size() + " notes)");
+        };
+        searchWorker.execute();
+    }
+
+    /**
+     * retrieves the next page of notes on a background thread when the user scrolled to the last notes, and adds the
+     * notes to the resultGrid. Only done when no search term is given, searches are done in the database.
+     */
+    private void loadMoreNotes() {
+        if (pageWorker != null || !passwordManager.hasMoreNotes() || !searchInput.getText().strip().equals("")) return;
+
+        pageWorker = new SwingWorker<>() {
+            @Override
+            protected Boolean doInBackground() {
+                return passwordManager.loadNextPage();
+            }
+
+            @Override
+            protected void done() {
+                pageWorker = null;
+                // the user might have started searching while the page was loading
+                if (searchInput.getText().strip().equals("")) {
+                    addNotesToPanel(passwordManager.getNotes(""), "");
+                }
+            }
+        };
+        pageWorker.execute();
+    }
+
+    /**
+     * adds notes to the resultGrid
+     * @param matches List of all notes to show
+     * @param searchTerm the search term to highlight in the notes
+     */
+    public void addNotesToPanel(List<NoteMatch> matches, String searchTerm) {
+        if (matches != null) {
+            // the grid only creates the note panes that are visible, and updates the GUI itself
+            resultGrid.setNotes(matches, searchTerm);
+            appLabel.setText("Password and notes manager (" + matches.size() + " notes)");
         } else {
+            resultGrid.setNotes(new ArrayList<>(), searchTerm);
             JOptionPane.showMessageDialog(this,
                     "Could not retrieve notes from the database.", "Database retrieval error",
                     JOptionPane.ERROR_MESSAGE);
             appLabel.setText("Password and notes manager");
         }
-
-        // since components were added and removed, validate() and repaint() the frame to update the GUI
-        validate();
-        repaint();
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
         if (e.getSource() == addNote) {
-            NewNote newNote = new NewNote();
-            newNote.setPasswordManagerGUI(this);
-            newNote.setPasswordManager(passwordManager);
+            UpsertNotePool.open(-1, passwordManager, this);
         }
     }
 }
@@ -0,0 +1,29 @@
+package GUI;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prints how long after the start of the JVM the steps of the startup are reached, enabled with
+ * -Dpasswordmanager.startupTrace=true. Every step is only printed the first time it is reached.
+ */
+public class StartupTrace {
+
+    private static final boolean ENABLED = Boolean.getBoolean("passwordmanager.startupTrace");
+    // the start of the JVM, or the first use of this class if the start is not known
+    private static final Instant START = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+    private static final Set<String> reached = ConcurrentHashMap.newKeySet();
+
+    private StartupTrace() {}
+
+    /**
+     * prints the time since the start of the JVM, if the step is reached for the first time
+     * @param step the name of the step
+     */
+    public static void mark(String step) {
+        if (!ENABLED || !reached.add(step)) return;
+        long millis = Instant.now().toEpochMilli() - START.toEpochMilli();
+        System.out.println("Startup: " + step + " after " + millis + " ms");
+    }
+}
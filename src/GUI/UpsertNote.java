@@ -1,17 +1,22 @@
 package GUI;
 
+import App.Draft;
 import App.PasswordManager;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 /***
- * abstract class that creates the GUI for updating and inserting (UpSert) notes. Extended by NewNote and EditNote.
+ * creates the GUI for updating and inserting (UpSert) notes. The window edits an existing note or creates a new note,
+ * depending on the note ID set with setNoteID(), so that the same window can be reused for both by UpsertNotePool.
+ * Unsaved changes are autosaved as a Draft, which is deleted when the note is saved or the window is closed.
  */
-public abstract class UpsertNote extends JFrame implements ActionListener {
+public class UpsertNote extends JFrame implements ActionListener {
 
     public PasswordManager passwordManager;
     public PasswordManagerGUI passwordManagerGUI;
@@ -19,18 +24,45 @@ public abstract class UpsertNote extends JFrame implements ActionListener {
     public JTextArea contentInput;
     public JButton saveNote;
     public JButton discardNote;
+    // changes are autosaved when nothing has been typed for AUTOSAVE_DELAY milliseconds, and at least every
+    // AUTOSAVE_PERIOD milliseconds while typing
+    private static final int AUTOSAVE_DELAY = 1000;
+    private static final int AUTOSAVE_PERIOD = 10000;
+    private final Timer autosaveTimer = new Timer(AUTOSAVE_DELAY, e -> autosave());
+    private final Timer periodicAutosaveTimer = new Timer(AUTOSAVE_PERIOD, e -> autosave());
+    private Draft draft;
+    // true when the title or content changed since the last autosave
+    private boolean changed = false;
+    // the ID of the edited note, or -1 for a new note
+    private int noteID = -1;
+    // counts how often the window was opened and closed, so that the result of a save can tell whether the window was
+    // closed in the meantime
+    private int openCount = 0;
 
     /**
-     * Constructor
+     * Constructor, the window is not shown until it is opened by UpsertNotePool
      */
     public UpsertNote() {
         setPreferredSize(new Dimension(470, 500));
         createGUI();
+        // every change restarts the autosave timer, so fast typing only results in one autosave
+        autosaveTimer.setRepeats(false);
+        DocumentListener changeListener = new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) {
+                inputChanged();
+            }
+            public void removeUpdate(DocumentEvent e) {
+                inputChanged();
+            }
+            public void insertUpdate(DocumentEvent e) {
+                inputChanged();
+            }
+        };
+        titleInput.getDocument().addDocumentListener(changeListener);
+        contentInput.getDocument().addDocumentListener(changeListener);
         pack();
-        setLocationRelativeTo(null);
         setResizable(false);
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
-        setVisible(true);
     }
 
     /**
@@ -99,23 +131,246 @@ public abstract class UpsertNote extends JFrame implements ActionListener {
     /**
      * sets text in the title input field
      */
-    public void setNoteTitle(String title) { titleInput.setText(title); }
+    public void setNoteTitle(String title) {
+        titleInput.setText(title);
+        stopAutosave();
+    }
 
     /**
      * sets text in the content input field
      */
-    public void setNoteContent (String content) { contentInput.setText(content); }
+    public void setNoteContent (String content) {
+        contentInput.setText(content);
+        stopAutosave();
+    }
+
+    /**
+     * continues autosaving to a recovered draft
+     * @param draft the draft, with the title and content that are in the input fields
+     */
+    public void setDraft(Draft draft) { this.draft = draft; }
+
+    /**
+     * switches the window between editing an existing note and creating a new note
+     * @param noteID the ID of the note in the database, or -1 for a new note
+     */
+    public void setNoteID(int noteID) {
+        this.noteID = noteID;
+        // sets the JFrame title
+        setTitle(noteID >= 0 ? "Edit Note" : "New Note");
+        discardNote.setText(noteID >= 0 ? "Delete" : "Discard");
+        saveNote.setVisible(true);
+        setButtonsEnabled(true);
+    }
+
+    /**
+     * enables or disables the save and discard buttons; they are disabled while a change is written, so that a note
+     * cannot be saved or deleted twice by clicking again
+     * @param enabled true to enable the buttons
+     */
+    private void setButtonsEnabled(boolean enabled) {
+        saveNote.setEnabled(enabled);
+        discardNote.setEnabled(enabled);
+    }
+
+    /**
+     * @return the ID of the note in the database, or -1 for a new note
+     */
+    public int getNoteID() { return noteID; }
+
+    /**
+     * shows the window, see UpsertNotePool.open()
+     */
+    void open() {
+        openCount++;
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    /**
+     * hides the window and clears the input fields, so that the window can be reused
+     */
+    void reset() {
+        openCount++;
+        setVisible(false);
+        setNoteTitle("");
+        setNoteContent("");
+        draft = null;
+        passwordManager = null;
+        passwordManagerGUI = null;
+    }
+
+    /**
+     * starts the autosave timers after the title or content was changed
+     */
+    private void inputChanged() {
+        changed = true;
+        autosaveTimer.restart();
+        if (!periodicAutosaveTimer.isRunning()) periodicAutosaveTimer.start();
+    }
+
+    /**
+     * stops the autosave timers, the current title and content do not have to be autosaved
+     */
+    private void stopAutosave() {
+        changed = false;
+        autosaveTimer.stop();
+        periodicAutosaveTimer.stop();
+    }
+
+    /**
+     * saves the unsaved title and content as a draft on the writer thread, if they changed since the last autosave
+     */
+    public void autosave() {
+        if (!changed || passwordManager == null) return;
+        stopAutosave();
+        if (draft == null) draft = new Draft(getNoteID());
+        passwordManager.saveDraft(draft, titleInput.getText(), contentInput.getText());
+    }
 
     /**
-     * re-retrieves all notes from the database and adds them to the GUI
+     * deletes the draft, after the note was saved or its changes were discarded
      */
-    public void updatePasswordManagerNotes() {
-        // the new note that has been added is first retrieved from the database, and then added to the main
-        // GUI
-        passwordManager.retrieveNotes();
-        passwordManagerGUI.addNotesToPanel(passwordManager.getNotes(""));
+    public void discardDraft() {
+        stopAutosave();
+        if (draft != null && passwordManager != null) {
+            passwordManager.discardDraft(draft);
+        }
+        draft = null;
     }
 
+    /**
+     * closes the window; the unsaved changes are discarded. The window is kept for reuse if the pool is not full.
+     */
     @Override
-    public abstract void actionPerformed(ActionEvent e);
+    public void dispose() {
+        discardDraft();
+        if (!UpsertNotePool.release(this)) {
+            super.dispose();
+        }
+    }
+
+    /**
+     * adds all notes to the GUI after a note was inserted, updated or deleted
+     * @param passwordManager instance of PasswordManager that changed the note
+     * @param passwordManagerGUI instance of PasswordManagerGUI to update
+     */
+    private static void updatePasswordManagerNotes(PasswordManager passwordManager, PasswordManagerGUI passwordManagerGUI) {
+        // PasswordManager already applied the change to its in-memory notes, so there is no need to re-retrieve all
+        // notes from the database
+        passwordManagerGUI.addNotesToPanel(passwordManager.getNotes(""), "");
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if (e.getSource() == saveNote) {
+            if (noteID >= 0) {
+                editNote();
+            } else {
+                createNote();
+            }
+        } else if (e.getSource() == discardNote) {
+            if (noteID < 0) {
+                dispose();
+                return;
+            }
+            int reply = JOptionPane.showConfirmDialog(this,
+                    "Are you sure you want to delete this note?", "Delete note", JOptionPane.YES_NO_OPTION);
+            if (reply == 0) { deleteNote(); }
+        }
+    }
+
+    /**
+     * saves the new note
+     */
+    private void createNote() {
+        String title = titleInput.getText();
+        PasswordManager passwordManager = this.passwordManager;
+        PasswordManagerGUI passwordManagerGUI = this.passwordManagerGUI;
+        int openCount = this.openCount;
+        setButtonsEnabled(false);
+        // the note is saved on the writer thread, the result is shown on the Event Dispatch Thread when it is done
+        passwordManager.createNewNote(title, contentInput.getText()).thenAccept(status -> SwingUtilities.invokeLater(() -> {
+            // the window may have been closed, and reused for another note, in the meantime
+            boolean reused = openCount != this.openCount;
+            Component parent = reused ? passwordManagerGUI : this;
+            // after a success only the close button is used again, the note must not be created twice
+            if (!reused) {
+                saveNote.setEnabled(status != PasswordManager.UpsertStatus.SUCCESS);
+                discardNote.setEnabled(true);
+            }
+            switch (status) {
+                case SUCCESS -> {
+                    if (!reused) discardDraft();
+                    JOptionPane.showMessageDialog(parent,
+                    "Successfully created note '" + title + "'.", "Note created",
+                    JOptionPane.INFORMATION_MESSAGE);
+                    if (!reused) {
+                        saveNote.setVisible(false);
+                        discardNote.setText("Close");
+                    }
+                    updatePasswordManagerNotes(passwordManager, passwordManagerGUI);
+                }
+                case NO_CONTENT -> JOptionPane.showMessageDialog(parent,
+                        "Nothing to save!", "No note content",
+                        JOptionPane.INFORMATION_MESSAGE);
+                case FAILED -> JOptionPane.showMessageDialog(parent,
+                        "Could not create note", "Database insert error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    /**
+     * saves the changes of the edited note
+     */
+    private void editNote() {
+        String title = titleInput.getText();
+        PasswordManager passwordManager = this.passwordManager;
+        PasswordManagerGUI passwordManagerGUI = this.passwordManagerGUI;
+        int openCount = this.openCount;
+        setButtonsEnabled(false);
+        // the note is saved on the writer thread, the result is shown on the Event Dispatch Thread when it is done
+        passwordManager.editNote(noteID, title, contentInput.getText()).thenAccept(status -> SwingUtilities.invokeLater(() -> {
+            // the window may have been closed, and reused for another note, in the meantime
+            boolean reused = openCount != this.openCount;
+            // the edited note stays open and can be changed and saved again
+            if (!reused) setButtonsEnabled(true);
+            switch (status) {
+                case SUCCESS -> {
+                    if (!reused) discardDraft();
+                    JOptionPane.showMessageDialog(reused ? passwordManagerGUI : this,
+                            "Successfully edited note '" + title + "'.", "Note updated",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    updatePasswordManagerNotes(passwordManager, passwordManagerGUI);
+                }
+                case FAILED -> JOptionPane.showMessageDialog(reused ? passwordManagerGUI : this,
+                        "Could not edit note", "Database update error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }));
+    }
+
+    /**
+     * deletes the edited note
+     */
+    public void deleteNote() {
+        PasswordManager passwordManager = this.passwordManager;
+        PasswordManagerGUI passwordManagerGUI = this.passwordManagerGUI;
+        int openCount = this.openCount;
+        setButtonsEnabled(false);
+        passwordManager.deleteNote(noteID).thenAccept(status -> SwingUtilities.invokeLater(() -> {
+            // the window may have been closed, and reused for another note, in the meantime
+            boolean reused = openCount != this.openCount;
+            if (status == PasswordManager.UpsertStatus.FAILED) {
+                if (!reused) setButtonsEnabled(true);
+                JOptionPane.showMessageDialog(reused ? passwordManagerGUI : this,
+                        "Could not delete note", "Database deletion error",
+                        JOptionPane.ERROR_MESSAGE);
+            } else {
+                updatePasswordManagerNotes(passwordManager, passwordManagerGUI);
+                if (!reused) dispose();
+            }
+        }));
+    }
 }
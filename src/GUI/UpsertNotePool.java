@@ -0,0 +1,66 @@
+package GUI;
+
+import App.PasswordManager;
+
+import javax.swing.*;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of UpsertNote windows that are created and packed before they are needed, so that opening a note or adding a
+ * new note does not have to wait for a window to be built. Closed windows are cleared and returned to the pool instead
+ * of being destroyed. The pool is only used on the Event Dispatch Thread.
+ */
+public class UpsertNotePool {
+
+    // the number of windows that are kept ready, more windows can be open at the same time
+    private static final int POOL_SIZE = 2;
+    private static final ArrayDeque<UpsertNote> pool = new ArrayDeque<>();
+
+    private UpsertNotePool() {}
+
+    /**
+     * fills the pool after the main window is shown. Every window is created in its own event, so that the GUI keeps
+     * responding in between.
+     */
+    public static void warmUp() {
+        SwingUtilities.invokeLater(() -> {
+            if (pool.size() < POOL_SIZE) {
+                pool.push(new UpsertNote());
+                warmUp();
+            }
+        });
+    }
+
+    /**
+     * opens a window from the pool, or a new window if the pool is empty
+     * @param noteID the ID of the note to edit, or -1 to create a new note
+     * @param passwordManager instance of PasswordManager as bridge between the GUI and the database
+     * @param passwordManagerGUI instance of PasswordManagerGUI to update the GUI after changes have been made
+     * @return the opened window, with empty input fields
+     */
+    public static UpsertNote open(int noteID, PasswordManager passwordManager, PasswordManagerGUI passwordManagerGUI) {
+        UpsertNote upsertNote = pool.isEmpty() ? new UpsertNote() : pool.pop();
+        upsertNote.setNoteID(noteID);
+        upsertNote.setPasswordManager(passwordManager);
+        upsertNote.setPasswordManagerGUI(passwordManagerGUI);
+        upsertNote.open();
+        return upsertNote;
+    }
+
+    /**
+     * clears a closed window and keeps it for reuse, if the pool is not full
+     * @param upsertNote the closed window
+     * @return true if the window was kept, false if it should be destroyed
+     */
+    static boolean release(UpsertNote upsertNote) {
+        if (pool.contains(upsertNote)) {
+            // the window was closed before
+            return true;
+        } else if (pool.size() >= POOL_SIZE) {
+            return false;
+        }
+        upsertNote.reset();
+        pool.push(upsertNote);
+        return true;
+    }
+}
@@ -7,11 +7,58 @@ import javax.swing.SwingUtilities;
 /**
  *  FlowLayout subclass that fully supports wrapping of components.
  *  Stolen from: https://tips4java.wordpress.com/2008/11/06/wrap-layout
+ *  <p>
+ *  The sizes of the components and the rows they are wrapped into are cached,
+ *  so that the preferred size, the minimum size and the layout of a container
+ *  are computed only once per validation instead of once per call. The cache
+ *  is cleared when the container is invalidated or its components changed,
+ *  and the rows are computed again from the cached sizes when the width changed.
  */
-public class WrapLayout extends FlowLayout
+public class WrapLayout extends FlowLayout implements LayoutManager2
 {
+    /*
+     *  The components of a container wrapped into rows for a maximum row width.
+     */
+    private static class Rows
+    {
+        private final int maxWidth;
+        // the index after the last component of every row
+        private final int[] ends;
+        private final int[] widths;
+        private final int[] heights;
+        private int count = 0;
+        // the size of all rows, without insets and gaps around them
+        private final Dimension size = new Dimension(0, 0);
+
+        private Rows(int maxWidth, int components)
+        {
+            this.maxWidth = maxWidth;
+            // there are never more rows than components
+            ends = new int[Math.max(components, 1)];
+            widths = new int[ends.length];
+            heights = new int[ends.length];
+        }
+
+        private void addRow(int end, int width, int height)
+        {
+            ends[count] = end;
+            widths[count] = width;
+            heights[count] = height;
+            count++;
+        }
+    }
+
     private Dimension preferredLayoutSize;
 
+    // the container of the cached sizes and rows, with its components when they were cached
+    private Container cachedTarget;
+    private Component[] cachedComponents;
+    // the preferred and minimum sizes of the components, null for invisible components
+    private Dimension[] preferredSizes;
+    private Dimension[] minimumSizes;
+    private Rows preferredRows;
+    private Rows minimumRows;
+
     /**
      * Constructs a new <code>GUI.WrapLayout</code> with a left
      * alignment and a default 5-unit horizontal and vertical gap.
@@ -78,6 +125,113 @@ public class WrapLayout extends FlowLayout
         return minimum;
     }
 
+    /**
+     * Returns the maximum dimensions for this layout, which are unlimited.
+     * @param target the component which needs to be laid out
+     * @return the maximum dimensions of the container
+     */
+    @Override
+    public Dimension maximumLayoutSize(Container target)
+    {
+        return new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lays out the container, by moving the components into the rows that
+     * were computed for the current width of the container.
+     * @param target the container which needs to be laid out
+     */
+    @Override
+    public void layoutContainer(Container target)
+    {
+        if (getAlignOnBaseline())
+        {
+            // aligning on the baseline is left to FlowLayout
+            super.layoutContainer(target);
+            return;
+        }
+
+        synchronized (target.getTreeLock())
+        {
+            Insets insets = target.getInsets();
+            int hgap = getHgap();
+            int vgap = getVgap();
+            int maxWidth = target.getSize().width - (insets.left + insets.right + hgap * 2);
+            boolean ltr = target.getComponentOrientation().isLeftToRight();
+
+            Dimension[] sizes = getSizes(target, true);
+            Rows rows = getRows(target, true, maxWidth);
+            int y = insets.top + vgap;
+            int start = 0;
+
+            for (int row = 0; row < rows.count; row++)
+            {
+                int x = insets.left + hgap + getRowOffset(maxWidth - rows.widths[row], ltr);
+
+                for (int i = start; i < rows.ends[row]; i++)
+                {
+                    Dimension d = sizes[i];
+
+                    if (d != null)
+                    {
+                        Component m = target.getComponent(i);
+                        m.setSize(d.width, d.height);
+                        int cy = y + (rows.heights[row] - d.height) / 2;
+                        m.setLocation(ltr ? x : target.getSize().width - x - d.width, cy);
+                        x += d.width + hgap;
+                    }
+                }
+
+                y += rows.heights[row] + vgap;
+                start = rows.ends[row];
+            }
+        }
+    }
+
+    /**
+     * Clears the cached sizes and rows, because the container or one of its
+     * components was invalidated.
+     * @param target the invalidated container
+     */
+    @Override
+    public void invalidateLayout(Container target)
+    {
+        if (target == cachedTarget)
+        {
+            clearCache();
+        }
+    }
+
+    /**
+     * Not used by this layout, components are laid out in their order in the container.
+     * @param comp the component to add
+     * @param constraints ignored
+     */
+    @Override
+    public void addLayoutComponent(Component comp, Object constraints)
+    {
+    }
+
+    /**
+     * @param target the container
+     * @return the horizontal alignment of the container, centered
+     */
+    @Override
+    public float getLayoutAlignmentX(Container target)
+    {
+        return Component.CENTER_ALIGNMENT;
+    }
+
+    /**
+     * @param target the container
+     * @return the vertical alignment of the container, centered
+     */
+    @Override
+    public float getLayoutAlignmentY(Container target)
+    {
+        return Component.CENTER_ALIGNMENT;
+    }
+
     /**
      * Returns the minimum or preferred dimension needed to layout the target
      * container.
@@ -115,62 +269,178 @@ public class WrapLayout extends FlowLayout
 
             //  Fit components into the allowed width
 
-            Dimension dim = new Dimension(0, 0);
-            int rowWidth = 0;
-            int rowHeight = 0;
+            Dimension dim = new Dimension(getRows(target, preferred, maxWidth).size);
 
-            int nmembers = target.getComponentCount();
+            dim.width += horizontalInsetsAndGap;
+            dim.height += insets.top + insets.bottom + vgap * 2;
 
-            for (int i = 0; i < nmembers; i++)
+            //	When using a scroll pane or the DecoratedLookAndFeel we need to
+            //  make sure the preferred size is less than the size of the
+            //  target containter so shrinking the container size works
+            //  correctly. Removing the horizontal gap is an easy way to do this.
+
+            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, target);
+
+            if (scrollPane != null && target.isValid())
             {
-                Component m = target.getComponent(i);
+                dim.width -= (hgap + 1);
+            }
 
-                if (m.isVisible())
-                {
-                    Dimension d = preferred ? m.getPreferredSize() : m.getMinimumSize();
+            return dim;
+        }
+    }
 
-                    //  Can't add the component to current row. Start a new row.
+    /*
+     *  Returns the cached preferred or minimum sizes of the components, after
+     *  clearing the cache if it belongs to other components.
+     *
+     *  @param target the container of the components
+     *  @param preferred should preferred sizes be returned
+     *  @return the sizes in the order of the components, null for invisible components
+     */
+    private Dimension[] getSizes(Container target, boolean preferred)
+    {
+        int nmembers = target.getComponentCount();
+        boolean cached = target == cachedTarget && cachedComponents.length == nmembers;
 
-                    if (rowWidth + d.width > maxWidth)
-                    {
-                        addRow(dim, rowWidth, rowHeight);
-                        rowWidth = 0;
-                        rowHeight = 0;
-                    }
+        for (int i = 0; cached && i < nmembers; i++)
+        {
+            cached = target.getComponent(i) == cachedComponents[i];
+        }
 
-                    //  Add a horizontal gap for all components after the first
+        if (!cached)
+        {
+            clearCache();
+            cachedTarget = target;
+            cachedComponents = target.getComponents();
+        }
 
-                    if (rowWidth != 0)
-                    {
-                        rowWidth += hgap;
-                    }
+        Dimension[] sizes = preferred ? preferredSizes : minimumSizes;
+
+        if (sizes == null)
+        {
+            sizes = new Dimension[nmembers];
+
+            for (int i = 0; i < nmembers; i++)
+            {
+                Component m = cachedComponents[i];
 
-                    rowWidth += d.width;
-                    rowHeight = Math.max(rowHeight, d.height);
+                if (m.isVisible())
+                {
+                    sizes[i] = preferred ? m.getPreferredSize() : m.getMinimumSize();
                 }
             }
 
-            addRow(dim, rowWidth, rowHeight);
+            if (preferred)
+                preferredSizes = sizes;
+            else
+                minimumSizes = sizes;
+        }
 
-            dim.width += horizontalInsetsAndGap;
-            dim.height += insets.top + insets.bottom + vgap * 2;
+        return sizes;
+    }
 
-            //	When using a scroll pane or the DecoratedLookAndFeel we need to
-            //  make sure the preferred size is less than the size of the
-            //  target containter so shrinking the container size works
-            //  correctly. Removing the horizontal gap is an easy way to do this.
+    /*
+     *  Returns the components wrapped into rows, computed from the cached sizes
+     *  if they were not wrapped for the same width yet.
+     *
+     *  @param target the container of the components
+     *  @param preferred should the preferred sizes be used
+     *  @param maxWidth the maximum width of a row
+     *  @return the rows of components
+     */
+    private Rows getRows(Container target, boolean preferred, int maxWidth)
+    {
+        Dimension[] sizes = getSizes(target, preferred);
+        Rows rows = preferred ? preferredRows : minimumRows;
 
-            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, target);
+        if (rows != null && rows.maxWidth == maxWidth)
+        {
+            return rows;
+        }
 
-            if (scrollPane != null && target.isValid())
+        rows = new Rows(maxWidth, sizes.length);
+        int hgap = getHgap();
+        int rowWidth = 0;
+        int rowHeight = 0;
+
+        for (int i = 0; i < sizes.length; i++)
+        {
+            Dimension d = sizes[i];
+
+            if (d != null)
             {
-                dim.width -= (hgap + 1);
+                //  Can't add the component to current row. Start a new row.
+
+                if (rowWidth != 0 && rowWidth + d.width > maxWidth)
+                {
+                    addRow(rows.size, rowWidth, rowHeight);
+                    rows.addRow(i, rowWidth, rowHeight);
+                    rowWidth = 0;
+                    rowHeight = 0;
+                }
+
+                //  Add a horizontal gap for all components after the first
+
+                if (rowWidth != 0)
+                {
+                    rowWidth += hgap;
+                }
+
+                rowWidth += d.width;
+                rowHeight = Math.max(rowHeight, d.height);
             }
+        }
 
-            return dim;
+        addRow(rows.size, rowWidth, rowHeight);
+        rows.addRow(sizes.length, rowWidth, rowHeight);
+
+        if (preferred)
+            preferredRows = rows;
+        else
+            minimumRows = rows;
+
+        return rows;
+    }
+
+    /*
+     *  Returns the horizontal offset of a row within the maximum row width,
+     *  in the same way as FlowLayout aligns its rows.
+     *
+     *  @param space the width that is left in the row
+     *  @param ltr is the container laid out from left to right
+     *  @return the offset of the first component of the row
+     */
+    private int getRowOffset(int space, boolean ltr)
+    {
+        switch (getAlignment())
+        {
+            case LEFT:
+                return ltr ? 0 : space;
+            case CENTER:
+                return space / 2;
+            case RIGHT:
+                return ltr ? space : 0;
+            case TRAILING:
+                return space;
+            default:
+                return 0;
         }
     }
 
+    /*
+     *  Clears the cached sizes and rows.
+     */
+    private void clearCache()
+    {
+        cachedTarget = null;
+        cachedComponents = null;
+        preferredSizes = null;
+        minimumSizes = null;
+        preferredRows = null;
+        minimumRows = null;
+    }
+
     /*
      *  A new row has been completed. Use the dimensions of this row
      *  to update the preferred size for the container.
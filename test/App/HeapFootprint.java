@@ -0,0 +1,116 @@
+package App;
+
+import GUI.NoteGrid;
+
+import javax.swing.*;
+import java.lang.reflect.Field;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * measures the heap that the notes take in the app: the NoteIndex snapshot of PasswordManager, the list of all notes
+ * shown in a NoteGrid, and a cached search. The notes have a title of about 15 and a content of about 200 characters.
+ * No trigram index is kept, as with -Dpasswordmanager.search=fts.
+ * <p>
+ * Run from the project directory, with the number of notes as argument (default 1000000):
+ * <pre>
+ * javac -cp lib/json-simple-1.1.1.jar -d out $(find src test -name '*.java')
+ * java -Xmx4g -Djava.awt.headless=true -cp out:lib/json-simple-1.1.1.jar App.HeapFootprint 1000000
+ * </pre>
+ */
+public class HeapFootprint {
+
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "password", "login", "secret", "user", "bank",
+            "mail", "server", "key", "token"};
+
+    public static void main(String[] args) throws Exception {
+        int noteCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long base = usedHeap();
+
+        PasswordManager passwordManager = new PasswordManager(null);
+        NoteIndex index = new NoteIndex(generateNotes(noteCount), false);
+        setNotes(passwordManager, index);
+        long store = usedHeap() - base;
+
+        List<NoteMatch> allNotes = passwordManager.getNotes("");
+        NoteGrid[] grid = new NoteGrid[1];
+        SwingUtilities.invokeAndWait(() -> {
+            grid[0] = new NoteGrid(passwordManager);
+            grid[0].getScrollPane().setSize(1000, 800);
+            grid[0].setNotes(allNotes, "");
+        });
+        long shown = usedHeap() - base;
+
+        List<NoteMatch> matches = passwordManager.getNotes("passw");
+        long searched = usedHeap() - base;
+
+        System.out.println(noteCount + " notes: snapshot " + (store >> 20) + " MB, with all notes in a grid "
+                + (shown >> 20) + " MB, with a cached search of " + matches.size() + " matches " + (searched >> 20) + " MB");
+        // keeps the grid reachable until it was measured
+        System.out.println(grid[0].getComponentCount() + " components in the grid");
+    }
+
+    /**
+     * @param noteCount the number of notes
+     * @return the notes, created while they are iterated so that they are not all in memory at the same time
+     */
+    private static Collection<Note> generateNotes(int noteCount) {
+        return new AbstractCollection<>() {
+            @Override
+            public int size() {
+                return noteCount;
+            }
+
+            @Override
+            public Iterator<Note> iterator() {
+                Random random = new Random(1);
+                return new Iterator<>() {
+                    private int noteID = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return noteID < noteCount;
+                    }
+
+                    @Override
+                    public Note next() {
+                        noteID++;
+                        StringBuilder content = new StringBuilder();
+                        while (content.length() < 200) content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                        return new Note(noteID, "Note title " + noteID, content.toString(), noteID, noteID);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * sets the notes of a PasswordManager without a database, as open() does after retrieving them
+     * @param passwordManager instance of PasswordManager
+     * @param index the notes
+     * @throws ReflectiveOperationException the notes field was not found
+     */
+    @SuppressWarnings("unchecked")
+    private static void setNotes(PasswordManager passwordManager, NoteIndex index) throws ReflectiveOperationException {
+        Field notes = PasswordManager.class.getDeclaredField("notes");
+        notes.setAccessible(true);
+        ((AtomicReference<NoteIndex>) notes.get(passwordManager)).set(index);
+    }
+
+    /**
+     * @return the used heap after garbage collection, in bytes
+     * @throws InterruptedException the thread was interrupted while waiting for the garbage collection
+     */
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
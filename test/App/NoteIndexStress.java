@@ -0,0 +1,241 @@
+package App;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * stress test of the NoteIndex snapshots: writer threads publish new versions the same way as PasswordManager (under a
+ * write lock, in an AtomicReference), while searcher threads search the current version. Every search result is
+ * compared with a brute-force scan of the same snapshot, and old snapshots are searched again later, to check that the
+ * data they share with newer versions (the NoteStore columns and the TrigramIndex) did not change under them.
+ * <p>
+ * Run from the project directory, exits with status 1 if a search result was wrong:
+ * <pre>
+ * javac -cp lib/json-simple-1.1.1.jar -d out $(find src test -name '*.java')
+ * java -cp out:lib/json-simple-1.1.1.jar App.NoteIndexStress
+ * </pre>
+ */
+public class NoteIndexStress {
+
+    private static final int INITIAL_NOTES = 2000;
+    private static final int WRITERS = 2;
+    private static final int WRITES_PER_WRITER = 20000;
+    private static final int SEARCHERS = 4;
+    // the number of old snapshots that every searcher keeps to search again later
+    private static final int KEPT_SNAPSHOTS = 8;
+    private static final String[] WORDS = {"alpha", "beta", "gamma", "delta", "Stra\u00dfe", "\u00c9COLE", "\u00e9cole", "\u03a3\u039f\u03a6\u0399\u0391",
+            "password", "PassWord", "login", "x", "ab", "aaa"};
+
+    private final AtomicReference<NoteIndex> notes = new AtomicReference<>();
+    private final Object writeLock = new Object();
+    private final AtomicInteger nextID = new AtomicInteger(1);
+    private final AtomicLong lastModDate = new AtomicLong(1_000_000);
+    private final AtomicBoolean writing = new AtomicBoolean(true);
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * a search result that was checked, to search the snapshot again later
+     */
+    private record CheckedSearch(NoteIndex snapshot, SearchTerm term, List<NoteMatch> result) {}
+
+    public static void main(String[] args) throws InterruptedException {
+        NoteIndexStress stress = new NoteIndexStress();
+        long start = System.nanoTime();
+        stress.run();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Checked " + stress.searches.get() + " searches against " + WRITERS * WRITES_PER_WRITER
+                + " writes in " + millis + " ms, " + stress.failures.get() + " failures");
+        if (stress.failures.get() > 0) System.exit(1);
+    }
+
+    /**
+     * runs the writers and searchers until all writes are done
+     * @throws InterruptedException the main thread was interrupted
+     */
+    private void run() throws InterruptedException {
+        Random random = new Random(1);
+        ArrayList<Note> initialNotes = new ArrayList<>();
+        for (int i = 0; i < INITIAL_NOTES; i++) {
+            initialNotes.add(randomNote(nextID.getAndIncrement(), random));
+        }
+        notes.set(new NoteIndex(initialNotes, true));
+
+        ArrayList<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            writers.add(new Thread(this::write, "writer-" + i));
+        }
+        ArrayList<Thread> searchers = new ArrayList<>();
+        for (int i = 0; i < SEARCHERS; i++) {
+            searchers.add(new Thread(this::search, "searcher-" + i));
+        }
+        searchers.forEach(Thread::start);
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) writer.join();
+        writing.set(false);
+        for (Thread searcher : searchers) searcher.join();
+    }
+
+    /**
+     * inserts, updates and deletes random notes
+     */
+    private void write() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < WRITES_PER_WRITER; i++) {
+            synchronized (writeLock) {
+                NoteIndex current = notes.get();
+                int operation = random.nextInt(10);
+                int noteID = random.nextInt(1, nextID.get());
+                if (operation < 4) {
+                    notes.set(current.withNote(randomNote(nextID.getAndIncrement(), random)));
+                } else if (operation < 8) {
+                    // updates a note, or inserts it again if it was deleted
+                    notes.set(current.withNote(randomNote(noteID, random)));
+                } else {
+                    notes.set(current.withoutNote(noteID));
+                }
+            }
+        }
+    }
+
+    /**
+     * searches the current snapshot with random terms and checks the results, until the writers are done
+     */
+    private void search() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CheckedSearch[] kept = new CheckedSearch[KEPT_SNAPSHOTS];
+        int searchCount = 0;
+        while (writing.get()) {
+            NoteIndex snapshot = notes.get();
+            SearchTerm term = randomTerm(random);
+            ArrayList<NoteMatch> result = snapshot.search(term);
+            check(snapshot, term, result, bruteForce(snapshot, term), "new");
+
+            // an old snapshot has to give the same result as when it was the current version
+            int keptIndex = searchCount++ % KEPT_SNAPSHOTS;
+            CheckedSearch old = kept[keptIndex];
+            if (old != null) check(old.snapshot, old.term, old.snapshot.search(old.term), old.result, "old");
+            kept[keptIndex] = new CheckedSearch(snapshot, term, result);
+            searches.incrementAndGet();
+        }
+    }
+
+    /**
+     * searches a snapshot without its trigram index, by matching every note in it
+     * @param snapshot the snapshot to search
+     * @param term the search term
+     * @return the matching notes, last edited notes first
+     */
+    private static List<NoteMatch> bruteForce(NoteIndex snapshot, SearchTerm term) {
+        ArrayList<NoteMatch> matches = new ArrayList<>();
+        Note previous = null;
+        for (Note note : snapshot) {
+            // the notes have to be ordered on last modification date, and then ID
+            if (previous != null && (previous.getLastModStamp() < note.getLastModStamp()
+                    || previous.getLastModStamp() == note.getLastModStamp() && previous.getId() <= note.getId())) {
+                throw new IllegalStateException("note " + note.getId() + " is out of order after note " + previous.getId());
+            }
+            previous = note;
+
+            int[] titleMatches = term.findMatches(note.getTitle());
+            int[] contentMatches = term.findMatches(note.getContent());
+            PasswordManager.MatchType matchType = PasswordManager.getMatchType(titleMatches.length > 0, contentMatches.length > 0);
+            if (matchType != PasswordManager.MatchType.NONE) {
+                matches.add(new NoteMatch(note, matchType, titleMatches, contentMatches));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * compares a search result with the expected result, and prints the first difference
+     * @param snapshot the searched snapshot
+     * @param term the search term
+     * @param result the result of the search
+     * @param expected the expected result
+     * @param kind whether the snapshot was new or old when it was searched
+     */
+    private void check(NoteIndex snapshot, SearchTerm term, List<NoteMatch> result, List<NoteMatch> expected, String kind) {
+        String difference = null;
+        if (result == null) {
+            difference = "no result";
+        } else if (result.size() != expected.size()) {
+            difference = result.size() + " matches instead of " + expected.size();
+        } else {
+            for (int i = 0; i < result.size() && difference == null; i++) {
+                difference = compare(result.get(i), expected.get(i));
+            }
+        }
+        if (difference != null && failures.incrementAndGet() <= 10) {
+            System.out.println("Wrong result for '" + term.getTerm() + "' in " + kind + " snapshot "
+                    + snapshot.getVersion() + ": " + difference);
+        }
+    }
+
+    /**
+     * @param match a match of the search
+     * @param expected the expected match
+     * @return the difference, or null if the matches are the same
+     */
+    private static String compare(NoteMatch match, NoteMatch expected) {
+        Note note = match.getNote();
+        Note expectedNote = expected.getNote();
+        if (note.getId() != expectedNote.getId()) {
+            return "note " + note.getId() + " instead of note " + expectedNote.getId();
+        }
+        if (!note.getTitle().equals(expectedNote.getTitle()) || !note.getContent().equals(expectedNote.getContent())
+                || note.getLastModStamp() != expectedNote.getLastModStamp()) {
+            return "note " + note.getId() + " has other text or date";
+        }
+        if (match.getMatchType() != expected.getMatchType()
+                || !Arrays.equals(match.getTitleMatches(), expected.getTitleMatches())
+                || !Arrays.equals(match.getContentMatches(), expected.getContentMatches())) {
+            return "note " + note.getId() + " has other matches";
+        }
+        return null;
+    }
+
+    /**
+     * @param noteID the note ID
+     * @param random the random generator
+     * @return a note with random words, edited after all notes before it
+     */
+    private Note randomNote(int noteID, Random random) {
+        long date = lastModDate.incrementAndGet();
+        return new Note(noteID, randomText(random, 1 + random.nextInt(4)), randomText(random, random.nextInt(40)),
+                date, date);
+    }
+
+    /**
+     * @param random the random generator
+     * @param wordCount the number of words
+     * @return the words, separated by spaces
+     */
+    private static String randomText(Random random, int wordCount) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) text.append(' ');
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param random the random generator
+     * @return a part of a random word, in random case; short terms are searched without the trigram index
+     */
+    private static SearchTerm randomTerm(Random random) {
+        String word = WORDS[random.nextInt(WORDS.length)];
+        int start = random.nextInt(word.length());
+        int end = start + 1 + random.nextInt(word.length() - start);
+        String term = word.substring(start, end);
+        return new SearchTerm(random.nextBoolean() ? term.toUpperCase() : term.toLowerCase());
+    }
+}